@@ -0,0 +1,33 @@
+package io.github.poelsk.authreloaded.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+// Runs every benchmark once per thread count in -Dthreads (default 1,4) and writes one JSON result file per run.
+// Regular JMH arguments (benchmark regexes, -p, -f, -wi, ...) are passed through.
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String outputDir = System.getProperty("resultDir", "target");
+        new File(outputDir).mkdirs();
+
+        for (String threads : System.getProperty("threads", "1,4").split(",")) {
+            int threadCount = Integer.parseInt(threads.trim());
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(outputDir, "jmh-result-t" + threadCount + ".json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
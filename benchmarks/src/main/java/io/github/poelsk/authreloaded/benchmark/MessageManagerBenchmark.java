@@ -0,0 +1,62 @@
+package io.github.poelsk.authreloaded.benchmark;
+
+import io.github.poelsk.authreloaded.managers.MessageManager;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageManagerBenchmark {
+
+    private MessageManager messageManager;
+    private CommandSender sender;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws Exception {
+        YamlConfiguration langConfig;
+        try (InputStream in = MessageManager.class.getResourceAsStream("/lang/en-US.yml")) {
+            langConfig = YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        messageManager = new MessageManager(null, langConfig);
+
+        // A sender that only swallows the formatted message, so the benchmark measures lookup and formatting.
+        sender = (CommandSender) Proxy.newProxyInstance(CommandSender.class.getClassLoader(),
+                new Class<?>[]{CommandSender.class}, (proxy, method, args) -> {
+                    if (args != null && args.length > 0) {
+                        blackhole.consume(args[0]);
+                    }
+                    return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                });
+    }
+
+    @Benchmark
+    public void sendMessageNoArgs() {
+        messageManager.sendMessage(sender, "login_success");
+    }
+
+    @Benchmark
+    public void sendMessageWithArgs() {
+        messageManager.sendMessage(sender, "invalid_password", "6", "128");
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.poelsk.authreloaded.benchmark;
+
+import io.github.poelsk.authreloaded.auth.PasswordService;
+import io.github.poelsk.authreloaded.auth.hash.Argon2Hasher;
+import io.github.poelsk.authreloaded.auth.hash.BCryptHasher;
+import io.github.poelsk.authreloaded.auth.hash.PasswordHasher;
+import io.github.poelsk.authreloaded.auth.hash.Pbkdf2Hasher;
+import io.github.poelsk.authreloaded.auth.hash.Sha256Hasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordServiceBenchmark {
+
+    private static final String PASSWORD = "correct-horse-battery";
+
+    @Param({"bcrypt", "pbkdf2", "argon2id"})
+    public String algorithm;
+
+    // BCrypt cost; PBKDF2 and Argon2id use the plugin's default parameters.
+    @Param({"10", "12"})
+    public int cost;
+
+    private PasswordService passwordService;
+    private String storedHash;
+
+    @Setup
+    public void setup() {
+        BCryptHasher bcrypt = new BCryptHasher(cost);
+        Pbkdf2Hasher pbkdf2 = new Pbkdf2Hasher(600000);
+        Argon2Hasher argon2 = new Argon2Hasher(19456, 2, 1);
+        PasswordHasher primary;
+        switch (algorithm) {
+            case "pbkdf2":
+                primary = pbkdf2;
+                break;
+            case "argon2id":
+                primary = argon2;
+                break;
+            default:
+                primary = bcrypt;
+                break;
+        }
+
+        passwordService = new PasswordService(primary, List.of(bcrypt, pbkdf2, argon2, new Sha256Hasher()));
+        storedHash = passwordService.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean checkPassword() {
+        return passwordService.checkPassword(PASSWORD, storedHash);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return passwordService.hashPassword(PASSWORD);
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.poelsk.authreloaded.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.poelsk.authreloaded.database.DatabaseManager;
+import io.github.poelsk.authreloaded.database.PlayerDataDAO;
+import io.github.poelsk.authreloaded.database.SQLiteEngine;
+import io.github.poelsk.authreloaded.model.PlayerData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.JDBC;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PlayerDataDAOBenchmark {
+
+    // 'sqlite' is the plugin's WAL engine (one writer, read-only readers); 'sqlite-pooled' is a plain HikariCP pool for comparison.
+    @Param({"sqlite", "sqlite-pooled", "h2"})
+    public String backend;
+
+    // Number of registered accounts in auth_players.
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private File directory;
+    private DatabaseManager databaseManager;
+    private PlayerDataDAO playerDataDAO;
+    private UUID[] registered;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        directory = Files.createTempDirectory("authreloaded-bench").toFile();
+
+        if ("sqlite".equals(backend)) {
+            SQLiteEngine engine = new SQLiteEngine(new JDBC(), new File(directory, "database.db"), 4,
+                    "NORMAL", 16384, 64L * 1024 * 1024, 30000, Logger.getLogger("AuthReloaded"));
+            databaseManager = new DatabaseManager(engine);
+        } else {
+            HikariConfig config = new HikariConfig();
+            if ("h2".equals(backend)) {
+                config.setJdbcUrl("jdbc:h2:" + new File(directory, "database").getAbsolutePath());
+                config.setUsername("sa");
+                config.setPassword("");
+            } else {
+                config.setJdbcUrl("jdbc:sqlite:" + new File(directory, "database.db").getAbsolutePath());
+            }
+            config.setMaximumPoolSize(10);
+            databaseManager = new DatabaseManager(new HikariDataSource(config), backend.equals("h2") ? "h2" : "sqlite");
+        }
+        playerDataDAO = new PlayerDataDAO(databaseManager);
+
+        registered = new UUID[rows];
+        List<PlayerData> chunk = new ArrayList<>();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < rows; i++) {
+            registered[i] = UUID.randomUUID();
+            chunk.add(new PlayerData(registered[i], "player" + i, "$2a$10$abcdefghijklmnopqrstuuMMnZ7mT4yL0ICgUJ0X4R3J0Z3fvWvW6",
+                    "10.0.0." + (i & 0xFF), now));
+            if (chunk.size() == 1000) {
+                playerDataDAO.createPlayers(chunk);
+                chunk.clear();
+            }
+        }
+        playerDataDAO.createPlayers(chunk);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        databaseManager.close();
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public Optional<PlayerData> getPlayerByUUIDHit() {
+        return playerDataDAO.getPlayerByUUID(registered[ThreadLocalRandom.current().nextInt(rows)]);
+    }
+
+    @Benchmark
+    public Optional<PlayerData> getPlayerByUUIDMiss() {
+        return playerDataDAO.getPlayerByUUID(new UUID(ThreadLocalRandom.current().nextLong(), 0));
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.poelsk.authreloaded.benchmark;
+
+import io.github.poelsk.authreloaded.auth.RateLimitingService;
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitingBenchmark {
+
+    // Number of players and addresses already tracked by the limiter.
+    @Param({"1000", "100000"})
+    public int trackedEntries;
+
+    private TimingWheel timingWheel;
+    private RateLimitingService rateLimitingService;
+    private UUID[] players;
+    private InetAddress[] addresses;
+
+    @Setup
+    public void setup() throws UnknownHostException {
+        timingWheel = new TimingWheel("RateLimitingBenchmark-Expiry", 1, TimeUnit.SECONDS, Logger.getLogger("RateLimitingBenchmark"));
+        rateLimitingService = new RateLimitingService(timingWheel);
+        players = new UUID[trackedEntries];
+        addresses = new InetAddress[trackedEntries];
+        for (int i = 0; i < trackedEntries; i++) {
+            players[i] = UUID.randomUUID();
+            addresses[i] = InetAddress.getByAddress(new byte[]{10, (byte) (i >> 16), (byte) (i >> 8), (byte) i});
+            rateLimitingService.recordFailedAttempt(players[i], addresses[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        timingWheel.shutdown();
+    }
+
+    @Benchmark
+    public RateLimitingService.LimitResult canAttemptLogin() {
+        int index = ThreadLocalRandom.current().nextInt(trackedEntries);
+        return rateLimitingService.canAttemptLogin(players[index], addresses[index]);
+    }
+
+    // Every thread hammers the same address, as a single attacking IP would.
+    @Benchmark
+    public RateLimitingService.LimitResult canAttemptLoginSingleAddress() {
+        int index = ThreadLocalRandom.current().nextInt(trackedEntries);
+        return rateLimitingService.canAttemptLogin(players[index], addresses[0]);
+    }
+
+    @Benchmark
+    public void recordFailedAttemptSingleAddress() {
+        int index = ThreadLocalRandom.current().nextInt(trackedEntries);
+        rateLimitingService.recordFailedAttempt(players[index], addresses[0]);
+    }
+
+    // A single attacking address hit from many threads at once; every update is a CAS on the same state.
+    @Benchmark
+    @Threads(8)
+    public void recordFailedAttemptSingleAddressContended() {
+        int index = ThreadLocalRandom.current().nextInt(trackedEntries);
+        rateLimitingService.recordFailedAttempt(players[index], addresses[0]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public RateLimitingService.LimitResult canAttemptLoginSingleAddressContended() {
+        int index = ThreadLocalRandom.current().nextInt(trackedEntries);
+        return rateLimitingService.canAttemptLogin(players[index], addresses[0]);
+    }
+}
@@ -1,22 +1,46 @@
 package io.github.poelsk.authreloaded;
 
+import io.github.poelsk.authreloaded.auth.AdmissionController;
 import io.github.poelsk.authreloaded.auth.AuthenticationService;
+import io.github.poelsk.authreloaded.auth.HashingExecutor;
 import io.github.poelsk.authreloaded.auth.PasswordService;
 import io.github.poelsk.authreloaded.auth.PremiumVerificationService;
+import io.github.poelsk.authreloaded.auth.RateLimitSnapshot;
 import io.github.poelsk.authreloaded.auth.RateLimitingService;
+import io.github.poelsk.authreloaded.auth.hash.Argon2Hasher;
+import io.github.poelsk.authreloaded.auth.hash.BCryptHasher;
+import io.github.poelsk.authreloaded.auth.hash.PasswordHasher;
+import io.github.poelsk.authreloaded.auth.hash.Pbkdf2Hasher;
+import io.github.poelsk.authreloaded.auth.hash.Sha256Hasher;
+import io.github.poelsk.authreloaded.cache.TimingWheel;
 import io.github.poelsk.authreloaded.commands.AdminCommand;
 import io.github.poelsk.authreloaded.commands.LoginCommand;
 import io.github.poelsk.authreloaded.commands.RegisterCommand;
 import io.github.poelsk.authreloaded.commands.PremiumCommand;
 import io.github.poelsk.authreloaded.database.DatabaseManager;
+import io.github.poelsk.authreloaded.database.LoginWriteBehindQueue;
+import io.github.poelsk.authreloaded.database.LookupBatcher;
 import io.github.poelsk.authreloaded.database.PlayerDataDAO;
+import io.github.poelsk.authreloaded.importer.AccountImporter;
 import io.github.poelsk.authreloaded.listeners.ActionLimiterListener;
 import io.github.poelsk.authreloaded.listeners.PlayerConnectionListener;
+import io.github.poelsk.authreloaded.managers.AuthProfileManager;
+import io.github.poelsk.authreloaded.managers.LockdownManager;
 import io.github.poelsk.authreloaded.managers.MessageManager;
 import io.github.poelsk.authreloaded.managers.PlayerStatusManager;
 import io.github.poelsk.authreloaded.managers.PremiumManager;
 import io.github.poelsk.authreloaded.managers.SessionManager;
+import io.github.poelsk.authreloaded.model.AuthProfile;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public final class AuthReloaded extends JavaPlugin {
 
@@ -30,6 +54,18 @@ public final class AuthReloaded extends JavaPlugin {
     private PremiumManager premiumManager;
     private PremiumVerificationService premiumVerificationService;
     private RateLimitingService rateLimitingService;
+    private HashingExecutor hashingExecutor;
+    private LoginWriteBehindQueue loginWriteQueue;
+    private LookupBatcher<UUID, AuthProfile> playerLookupBatcher;
+    private AuthProfileManager authProfileManager;
+    private LockdownManager lockdownManager;
+    private AccountImporter accountImporter;
+    private TimingWheel timingWheel;
+    private RateLimitSnapshot rateLimitSnapshot;
+    private AdmissionController admissionController;
+    private BukkitTask rateLimitSnapshotTask;
+    // Set once the snapshot has been read back; saving earlier would replace it with a partial state.
+    private volatile boolean rateLimitsLoaded;
 
     @Override
     public void onEnable() {
@@ -40,26 +76,78 @@ public final class AuthReloaded extends JavaPlugin {
 
         databaseManager.initializeDatabase();
 
-        this.playerDataDAO = new PlayerDataDAO(this.databaseManager);
-        this.passwordService = new PasswordService();
+        this.playerDataDAO = new PlayerDataDAO(this.databaseManager,
+                getConfig().getInt("database.cache.max-size", 1000),
+                getConfig().getLong("database.cache.ttl-seconds", 300));
+        this.playerLookupBatcher = new LookupBatcher<>(playerDataDAO::getProfilesByUUIDs, databaseManager.getExecutor(),
+                getConfig().getLong("database.lookup-batching.window-ms", 5),
+                getConfig().getInt("database.lookup-batching.max-batch-size", 50));
+        this.authProfileManager = new AuthProfileManager();
+        this.lockdownManager = new LockdownManager(getConfig().getBoolean("security.lockdown.enabled", false));
+        loadRegisteredFilter();
+        this.passwordService = createPasswordService();
         this.sessionManager = new SessionManager();
         this.playerStatusManager = new PlayerStatusManager();
-        this.rateLimitingService = new RateLimitingService();
-        this.authenticationService = new AuthenticationService(playerDataDAO, passwordService, sessionManager, messageManager, rateLimitingService);
+        this.timingWheel = new TimingWheel("AuthReloaded-Expiry", 1, TimeUnit.SECONDS, getLogger());
+        this.rateLimitingService = new RateLimitingService(timingWheel,
+                getConfig().getInt("security.rate-limit.player.max-attempts", 5),
+                getConfig().getLong("security.rate-limit.player.window-seconds", 600),
+                getConfig().getInt("security.rate-limit.ip.max-attempts", 15),
+                getConfig().getLong("security.rate-limit.ip.window-seconds", 600),
+                getConfig().getInt("security.rate-limit.subnet.max-attempts", 40),
+                getConfig().getLong("security.rate-limit.subnet.window-seconds", 600));
+        loadRateLimits();
+        if (getConfig().getBoolean("security.admission.enabled", true)) {
+            this.admissionController = new AdmissionController(timingWheel, getLogger(),
+                    getConfig().getLong("security.admission.window-seconds", 10),
+                    getConfig().getInt("security.admission.attack-mode.enter-joins", 60),
+                    getConfig().getInt("security.admission.attack-mode.exit-joins", 20),
+                    getConfig().getLong("security.admission.attack-mode.min-duration-seconds", 120),
+                    getConfig().getInt("security.admission.max-joins-per-ip", 5),
+                    getConfig().getInt("security.admission.max-joins-per-subnet", 15));
+        }
+        this.hashingExecutor = new HashingExecutor(
+                getConfig().getInt("security.hashing.threads", 0),
+                getConfig().getInt("security.hashing.queue-size", 64),
+                getConfig().getInt("security.hashing.max-per-player", 1));
+        this.loginWriteQueue = new LoginWriteBehindQueue(playerDataDAO, getLogger(),
+                getConfig().getLong("database.write-behind.flush-interval-ms", 1000),
+                getConfig().getInt("database.write-behind.max-batch-size", 500));
+        this.authenticationService = new AuthenticationService(playerDataDAO, passwordService, sessionManager, messageManager, rateLimitingService, hashingExecutor, databaseManager.getExecutor(), loginWriteQueue, authProfileManager);
         this.premiumManager = new PremiumManager(this);
         this.premiumVerificationService = new PremiumVerificationService(this); // Pasar instancia del plugin
+        this.accountImporter = new AccountImporter(this);
 
         registerCommands();
         registerListeners();
+        calibratePasswordHashing();
 
         getLogger().info("AuthReloaded has been enabled!");
     }
 
     @Override
     public void onDisable() {
-        if (rateLimitingService != null) {
-            rateLimitingService.shutdown();
-            getLogger().info("Rate limiting service shutdown complete.");
+        if (rateLimitSnapshot != null) {
+            rateLimitSnapshotTask.cancel();
+            saveRateLimits();
+        }
+
+        if (playerLookupBatcher != null) {
+            playerLookupBatcher.shutdown();
+        }
+
+        if (hashingExecutor != null) {
+            hashingExecutor.shutdown();
+            getLogger().info("Password hashing pool shutdown complete.");
+        }
+
+        if (loginWriteQueue != null) {
+            loginWriteQueue.shutdown();
+            getLogger().info("Pending login records written.");
+        }
+
+        if (premiumManager != null) {
+            premiumManager.shutdown();
         }
 
         if (premiumVerificationService != null) {
@@ -67,6 +155,10 @@ public final class AuthReloaded extends JavaPlugin {
             getLogger().info("Premium verification service shutdown complete.");
         }
 
+        if (timingWheel != null) {
+            timingWheel.shutdown();
+        }
+
         if (databaseManager != null) {
             databaseManager.close();
             getLogger().info("Database connections closed.");
@@ -75,6 +167,111 @@ public final class AuthReloaded extends JavaPlugin {
         getLogger().info("AuthReloaded has been disabled.");
     }
 
+    private PasswordService createPasswordService() {
+        FileConfiguration config = getConfig();
+        BCryptHasher bcrypt = new BCryptHasher(config.getInt("security.bcrypt.cost", 12));
+        Pbkdf2Hasher pbkdf2 = new Pbkdf2Hasher(config.getInt("security.pbkdf2.iterations", 600000));
+        Argon2Hasher argon2 = new Argon2Hasher(
+                config.getInt("security.argon2id.memory-kib", 19456),
+                config.getInt("security.argon2id.iterations", 2),
+                config.getInt("security.argon2id.parallelism", 1));
+        String algorithm = config.getString("security.hashing.algorithm", "bcrypt").toLowerCase();
+        PasswordHasher primary;
+        switch (algorithm) {
+            case "pbkdf2":
+                primary = pbkdf2;
+                break;
+            case "argon2id":
+                primary = argon2;
+                break;
+            case "bcrypt":
+                primary = bcrypt;
+                break;
+            default:
+                getLogger().warning("Unsupported password algorithm '" + algorithm + "', falling back to bcrypt.");
+                primary = bcrypt;
+                break;
+        }
+
+        return new PasswordService(primary, List.of(bcrypt, pbkdf2, argon2, new Sha256Hasher()));
+    }
+
+    private void calibratePasswordHashing() {
+        if (!(passwordService.getPrimaryHasher() instanceof BCryptHasher)) {
+            return;
+        }
+
+        BCryptHasher bcrypt = (BCryptHasher) passwordService.getPrimaryHasher();
+        if (!getConfig().getBoolean("security.bcrypt.calibrate", true)) {
+            getLogger().info("Using BCrypt cost " + bcrypt.getCost() + ".");
+            return;
+        }
+
+        long targetMillis = getConfig().getLong("security.bcrypt.target-millis", 250);
+        int minCost = getConfig().getInt("security.bcrypt.min-cost", 10);
+        int maxCost = getConfig().getInt("security.bcrypt.max-cost", 16);
+
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            int cost = bcrypt.calibrate(targetMillis, minCost, maxCost);
+            getLogger().info("Calibrated BCrypt cost to " + cost + " (target " + targetMillis + "ms per verification).");
+        });
+    }
+
+    private void loadRegisteredFilter() {
+        if (!getConfig().getBoolean("database.registered-filter.enabled", true)) {
+            return;
+        }
+
+        double falsePositiveRate = getConfig().getDouble("database.registered-filter.false-positive-rate", 0.01);
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            long start = System.currentTimeMillis();
+            try {
+                long accounts = playerDataDAO.loadRegisteredFilter(falsePositiveRate);
+                getLogger().info("Loaded " + accounts + " registered accounts into the pre-login filter in "
+                        + (System.currentTimeMillis() - start) + "ms.");
+            } catch (SQLException e) {
+                getLogger().warning("Could not load the registered account filter, pre-login will query the database: " + e.getMessage());
+            }
+        });
+    }
+
+    private void loadRateLimits() {
+        if (!getConfig().getBoolean("security.rate-limit.persistence.enabled", true)) {
+            return;
+        }
+
+        // Read in the background so a large snapshot doesn't hold up startup. Limiting starts right away with
+        // empty limiters; restored attempts are added to the ones counted since.
+        this.rateLimitSnapshot = new RateLimitSnapshot(new File(getDataFolder(), "rate-limits.bin"));
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            long start = System.currentTimeMillis();
+            try {
+                int restored = rateLimitSnapshot.load(rateLimitingService);
+                getLogger().info("Restored " + restored + " rate limit entries in " + (System.currentTimeMillis() - start) + "ms.");
+            } catch (IOException e) {
+                getLogger().warning("Could not load the rate limit snapshot, starting with empty limits: " + e.getMessage());
+            } finally {
+                rateLimitsLoaded = true;
+            }
+        });
+
+        long periodTicks = Math.max(20, getConfig().getLong("security.rate-limit.persistence.snapshot-interval-seconds", 300) * 20);
+        this.rateLimitSnapshotTask = getServer().getScheduler().runTaskTimerAsynchronously(this, this::saveRateLimits, periodTicks, periodTicks);
+    }
+
+    private void saveRateLimits() {
+        if (!rateLimitsLoaded) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            int written = rateLimitSnapshot.save(rateLimitingService);
+            getLogger().fine("Saved " + written + " rate limit entries in " + (System.currentTimeMillis() - start) + "ms.");
+        } catch (IOException e) {
+            getLogger().warning("Could not save the rate limit snapshot: " + e.getMessage());
+        }
+    }
+
     private void registerCommands() {
         this.getCommand("login").setExecutor(new LoginCommand(this));
         this.getCommand("register").setExecutor(new RegisterCommand(this));
@@ -91,6 +288,14 @@ public final class AuthReloaded extends JavaPlugin {
         return authenticationService;
     }
 
+    public PasswordService getPasswordService() {
+        return passwordService;
+    }
+
+    public AccountImporter getAccountImporter() {
+        return accountImporter;
+    }
+
     public MessageManager getMessageManager() {
         return messageManager;
     }
@@ -103,6 +308,23 @@ public final class AuthReloaded extends JavaPlugin {
         return playerDataDAO;
     }
 
+    public LookupBatcher<UUID, AuthProfile> getPlayerLookupBatcher() {
+        return playerLookupBatcher;
+    }
+
+    public AuthProfileManager getAuthProfileManager() {
+        return authProfileManager;
+    }
+
+    public LockdownManager getLockdownManager() {
+        return lockdownManager;
+    }
+
+    // Null if admission control is disabled.
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
     public PlayerStatusManager getPlayerStatusManager() {
         return playerStatusManager;
     }
@@ -119,6 +341,10 @@ public final class AuthReloaded extends JavaPlugin {
         return databaseManager;
     }
 
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
     public RateLimitingService getRateLimitingService() {
         return rateLimitingService;
     }
@@ -0,0 +1,37 @@
+package io.github.poelsk.authreloaded.auth;
+
+import java.net.InetAddress;
+
+// Addresses as primitive keys. A single host is an IPv4 address or an IPv6 /64, since that is what one
+// IPv6 client usually gets; its subnet is the IPv4 /24 or IPv6 /48 around it.
+final class AddressKeys {
+
+    private static final long IPV4_SUBNET_MASK = 0xFFFFFF00L;
+    private static final long IPV6_SUBNET_MASK = 0xFFFFFFFFFFFF0000L;
+
+    private AddressKeys() {
+    }
+
+    static long ipv4(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+    }
+
+    static long ipv4Subnet(long ipv4) {
+        return ipv4 & IPV4_SUBNET_MASK;
+    }
+
+    // The first 64 bits of an IPv6 address.
+    static long ipv6Prefix(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        long prefix = 0;
+        for (int i = 0; i < 8; i++) {
+            prefix = (prefix << 8) | (bytes[i] & 0xFFL);
+        }
+        return prefix;
+    }
+
+    static long ipv6Subnet(long prefix) {
+        return prefix & IPV6_SUBNET_MASK;
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.poelsk.authreloaded.auth;
+
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// Counts connection attempts at pre-login, before anything is looked up. Once the whole server reaches
+// enterJoins joins within the window it goes into attack mode, and leaves it once joins have fallen
+// below exitJoins and it has been on for at least minAttackSeconds, so it doesn't flap at the threshold.
+// An address or subnet joining faster than its own limit is treated as under attack on its own.
+public class AdmissionController {
+
+    private final SlidingWindow globalWindow;
+    private final AtomicLong globalState = new AtomicLong();
+    private final int enterJoins;
+    private final int exitJoins;
+    private final long minAttackMillis;
+    private final AtomicBoolean attackMode = new AtomicBoolean();
+    private volatile long attackModeSince;
+
+    private final LongKeyLimiter ipv4HostJoins;
+    private final LongKeyLimiter ipv4SubnetJoins;
+    private final LongKeyLimiter ipv6HostJoins;
+    private final LongKeyLimiter ipv6SubnetJoins;
+    private final Logger logger;
+
+    public AdmissionController(TimingWheel timingWheel, Logger logger, long windowSeconds, int enterJoins, int exitJoins,
+                               long minAttackSeconds, int maxJoinsPerIp, int maxJoinsPerSubnet) {
+        this.logger = logger;
+        enterJoins = capped("enter-joins", enterJoins);
+        maxJoinsPerIp = capped("max-joins-per-ip", maxJoinsPerIp);
+        maxJoinsPerSubnet = capped("max-joins-per-subnet", maxJoinsPerSubnet);
+        this.globalWindow = new SlidingWindow(enterJoins, windowSeconds, TimeUnit.SECONDS);
+        this.enterJoins = Math.max(1, enterJoins);
+        this.exitJoins = Math.min(exitJoins, this.enterJoins);
+        this.minAttackMillis = TimeUnit.SECONDS.toMillis(minAttackSeconds);
+        this.ipv4HostJoins = new LongKeyLimiter(maxJoinsPerIp, windowSeconds, TimeUnit.SECONDS, timingWheel);
+        this.ipv6HostJoins = new LongKeyLimiter(maxJoinsPerIp, windowSeconds, TimeUnit.SECONDS, timingWheel);
+        this.ipv4SubnetJoins = new LongKeyLimiter(maxJoinsPerSubnet, windowSeconds, TimeUnit.SECONDS, timingWheel);
+        this.ipv6SubnetJoins = new LongKeyLimiter(maxJoinsPerSubnet, windowSeconds, TimeUnit.SECONDS, timingWheel);
+    }
+
+    // Counts the join and returns true if only registered players should be let in from this address.
+    public boolean recordJoin(InetAddress address) {
+        long now = System.currentTimeMillis();
+        long state;
+        long updated;
+        do {
+            state = globalState.get();
+            updated = globalWindow.record(state, now);
+        } while (!globalState.compareAndSet(state, updated));
+        updateAttackMode(globalWindow.count(updated, now), now);
+
+        // Checked before counting, so an address may join exactly its limit within the window.
+        boolean addressLimited = false;
+        if (address instanceof Inet4Address) {
+            long ip = AddressKeys.ipv4(address);
+            long subnet = AddressKeys.ipv4Subnet(ip);
+            addressLimited = ipv4HostJoins.isLimited(ip, now) || ipv4SubnetJoins.isLimited(subnet, now);
+            ipv4HostJoins.recordAttempt(ip, now);
+            ipv4SubnetJoins.recordAttempt(subnet, now);
+        } else if (address != null) {
+            long prefix = AddressKeys.ipv6Prefix(address);
+            long subnet = AddressKeys.ipv6Subnet(prefix);
+            addressLimited = ipv6HostJoins.isLimited(prefix, now) || ipv6SubnetJoins.isLimited(subnet, now);
+            ipv6HostJoins.recordAttempt(prefix, now);
+            ipv6SubnetJoins.recordAttempt(subnet, now);
+        }
+        return addressLimited || attackMode.get();
+    }
+
+    public boolean isAttackMode() {
+        return attackMode.get();
+    }
+
+    // The windows count at most SlidingWindow.MAX_ATTEMPTS joins, so a higher threshold would never trip.
+    private int capped(String setting, int joins) {
+        if (joins <= SlidingWindow.MAX_ATTEMPTS) {
+            return joins;
+        }
+        logger.warning("Admission " + setting + " is " + joins + ", above the " + SlidingWindow.MAX_ATTEMPTS
+                + " joins a window can count; using " + SlidingWindow.MAX_ATTEMPTS + ".");
+        return SlidingWindow.MAX_ATTEMPTS;
+    }
+
+    private void updateAttackMode(double joins, long now) {
+        if (!attackMode.get()) {
+            if (joins >= enterJoins) {
+                // Set before the flag so a concurrent exit check never sees an old timestamp.
+                attackModeSince = now;
+                if (attackMode.compareAndSet(false, true)) {
+                    logger.warning("Reached " + (long) joins + " joins per " + globalWindow.getWindowSeconds()
+                            + "s, entering attack mode: only registered players can join.");
+                }
+            }
+        } else if (joins < exitJoins && now - attackModeSince >= minAttackMillis) {
+            if (attackMode.compareAndSet(true, false)) {
+                logger.info("Joins dropped to " + (long) joins + " per " + globalWindow.getWindowSeconds()
+                        + "s, leaving attack mode.");
+            }
+        }
+    }
+}
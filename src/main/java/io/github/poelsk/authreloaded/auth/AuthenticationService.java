@@ -1,15 +1,29 @@
 package io.github.poelsk.authreloaded.auth;
 
+import io.github.poelsk.authreloaded.database.DatabaseUnavailableException;
+import io.github.poelsk.authreloaded.database.LoginWriteBehindQueue;
 import io.github.poelsk.authreloaded.database.PlayerDataDAO;
+import io.github.poelsk.authreloaded.managers.AuthProfileManager;
 import io.github.poelsk.authreloaded.managers.MessageManager;
 import io.github.poelsk.authreloaded.managers.SessionManager;
+import io.github.poelsk.authreloaded.model.AuthProfile;
 import io.github.poelsk.authreloaded.model.PlayerData;
 import org.bukkit.entity.Player;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 public class AuthenticationService {
 
@@ -18,6 +32,11 @@ public class AuthenticationService {
     private final SessionManager sessionManager;
     private final MessageManager messageManager;
     private final RateLimitingService rateLimitingService;
+    private final HashingExecutor hashingExecutor;
+    private final Executor databaseExecutor;
+    private final LoginWriteBehindQueue loginWriteQueue;
+    private final AuthProfileManager authProfileManager;
+    private final Map<UUID, CompletableFuture<AuthResult>> pendingAttempts = new ConcurrentHashMap<>();
 
     public enum AuthResult {
         SUCCESS,
@@ -27,101 +46,228 @@ public class AuthenticationService {
         INCORRECT_PASSWORD,
         RATE_LIMITED,
         INVALID_PASSWORD,
+        SERVER_BUSY,
+        BACKEND_UNAVAILABLE,
+        ATTEMPT_IN_PROGRESS,
         FAILURE
     }
 
     public AuthenticationService(PlayerDataDAO playerDataDAO, PasswordService passwordService,
                                  SessionManager sessionManager, MessageManager messageManager,
-                                 RateLimitingService rateLimitingService) {
+                                 RateLimitingService rateLimitingService, HashingExecutor hashingExecutor,
+                                 Executor databaseExecutor, LoginWriteBehindQueue loginWriteQueue,
+                                 AuthProfileManager authProfileManager) {
         this.playerDataDAO = playerDataDAO;
         this.passwordService = passwordService;
         this.sessionManager = sessionManager;
         this.messageManager = messageManager;
         this.rateLimitingService = rateLimitingService;
+        this.hashingExecutor = hashingExecutor;
+        this.databaseExecutor = databaseExecutor;
+        this.loginWriteQueue = loginWriteQueue;
+        this.authProfileManager = authProfileManager;
     }
 
-    public AuthResult registerPlayer(Player player, String password) {
+    // Each stage runs where it belongs: memory-only checks inline on the caller's thread, database
+    // access on the database executor and hashing on the hashing pool. The returned future completes
+    // on whichever pool ran the last stage, so callers hop back to the main thread themselves.
+    public CompletableFuture<AuthResult> registerAsync(Player player, String password) {
         if (player == null) {
-            return AuthResult.FAILURE;
+            return CompletableFuture.completedFuture(AuthResult.FAILURE);
         }
 
         PasswordService.ValidationResult validation = passwordService.validatePassword(password);
         if (validation != PasswordService.ValidationResult.VALID) {
-            return AuthResult.INVALID_PASSWORD;
+            return CompletableFuture.completedFuture(AuthResult.INVALID_PASSWORD);
         }
 
-        if (playerDataDAO.getPlayerByUUID(player.getUniqueId()).isPresent()) {
-            return AuthResult.ALREADY_REGISTERED;
-        }
-
-        String hashedPassword = passwordService.hashPassword(password);
-        String playerIP = getPlayerIP(player);
+        UUID playerUUID = player.getUniqueId();
+        String playerName = player.getName();
+        InetAddress address = getPlayerAddress(player);
 
-        PlayerData data = new PlayerData(
-                player.getUniqueId(),
-                player.getName(),
-                hashedPassword,
-                playerIP,
-                Timestamp.from(Instant.now())
-        );
-
-        try {
-            playerDataDAO.createPlayer(data);
-            sessionManager.createSession(player);
+        return runExclusive(playerUUID, () -> loadPlayerData(playerUUID)
+                .thenCompose(existing -> {
+                    if (existing.isPresent()) {
+                        return CompletableFuture.completedFuture(AuthResult.ALREADY_REGISTERED);
+                    }
+                    return hashingExecutor.submit(playerUUID, () -> passwordService.hashPassword(password))
+                            .thenCompose(hashedPassword -> supplyOnDatabase(() -> {
+                                PlayerData data = new PlayerData(
+                                        playerUUID,
+                                        playerName,
+                                        hashedPassword,
+                                        toIP(address),
+                                        Timestamp.from(Instant.now())
+                                );
+                                try {
+                                    if (!playerDataDAO.createPlayer(data)) {
+                                        return AuthResult.ALREADY_REGISTERED;
+                                    }
+                                } catch (SQLException e) {
+                                    throw new CompletionException(e);
+                                }
+                                // Only once the row is stored, so a failed insert never leaves a session behind.
+                                authProfileManager.updatePlayerData(data);
+                                sessionManager.createSession(player);
 
-            rateLimitingService.recordSuccessfulLogin(player.getUniqueId(), playerIP);
+                                rateLimitingService.recordSuccessfulLogin(playerUUID, address);
 
-            return AuthResult.SUCCESS;
-        } catch (Exception e) {
-            messageManager.plugin.getLogger().severe("Failed to register player " + player.getName() + ": " + e.getMessage());
-            return AuthResult.FAILURE;
-        }
+                                return AuthResult.SUCCESS;
+                            }));
+                })
+                .exceptionally(e -> handleFailure(playerName, "register", e)));
     }
 
-    public AuthResult loginPlayer(Player player, String password) {
+    public CompletableFuture<AuthResult> loginAsync(Player player, String password) {
         if (player == null) {
-            return AuthResult.FAILURE;
+            return CompletableFuture.completedFuture(AuthResult.FAILURE);
         }
 
         if (sessionManager.isLoggedIn(player)) {
-            return AuthResult.ALREADY_LOGGED_IN;
+            return CompletableFuture.completedFuture(AuthResult.ALREADY_LOGGED_IN);
         }
 
-        String playerIP = getPlayerIP(player);
+        UUID playerUUID = player.getUniqueId();
+        String playerName = player.getName();
+        InetAddress address = getPlayerAddress(player);
 
-        RateLimitingService.LimitResult limitResult = rateLimitingService.canAttemptLogin(player.getUniqueId(), playerIP);
+        RateLimitingService.LimitResult limitResult = rateLimitingService.canAttemptLogin(playerUUID, address);
         if (limitResult != RateLimitingService.LimitResult.ALLOWED) {
-            return AuthResult.RATE_LIMITED;
+            return CompletableFuture.completedFuture(AuthResult.RATE_LIMITED);
+        }
+
+        return runExclusive(playerUUID, () -> loadPlayerData(playerUUID)
+                .thenCompose(playerDataOpt -> {
+                    if (playerDataOpt.isEmpty()) {
+                        return CompletableFuture.completedFuture(AuthResult.NOT_REGISTERED);
+                    }
+
+                    PlayerData playerData = playerDataOpt.get();
+                    return hashingExecutor.submit(playerUUID, () -> passwordService.checkPassword(password, playerData.getPasswordHash()))
+                            .thenCompose(passwordMatches -> {
+                                if (!passwordMatches) {
+                                    rateLimitingService.recordFailedAttempt(playerUUID, address);
+                                    return CompletableFuture.completedFuture(AuthResult.INCORRECT_PASSWORD);
+                                }
+
+                                sessionManager.createSession(player);
+                                rateLimitingService.recordSuccessfulLogin(playerUUID, address);
+
+                                if (passwordService.needsRehash(playerData.getPasswordHash())) {
+                                    rehashPassword(playerData, password);
+                                }
+
+                                // Last IP and login time are written in batches, so the login doesn't wait on them.
+                                loginWriteQueue.recordLogin(playerUUID, toIP(address));
+                                return CompletableFuture.completedFuture(AuthResult.SUCCESS);
+                            });
+                })
+                .exceptionally(e -> handleFailure(playerName, "login", e)));
+    }
+
+    // Only one login or register attempt per player is processed at a time; anything sent while one is
+    // pending is answered with ATTEMPT_IN_PROGRESS without touching the database or the hashing pool.
+    private CompletableFuture<AuthResult> runExclusive(UUID playerUUID, Supplier<CompletableFuture<AuthResult>> attempt) {
+        CompletableFuture<AuthResult> pending = new CompletableFuture<>();
+        if (pendingAttempts.putIfAbsent(playerUUID, pending) != null) {
+            return CompletableFuture.completedFuture(AuthResult.ATTEMPT_IN_PROGRESS);
         }
 
-        Optional<PlayerData> playerDataOpt = playerDataDAO.getPlayerByUUID(player.getUniqueId());
-        if (playerDataOpt.isEmpty()) {
-            return AuthResult.NOT_REGISTERED;
+        CompletableFuture<AuthResult> result;
+        try {
+            result = attempt.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
         }
 
-        PlayerData playerData = playerDataOpt.get();
-        if (passwordService.checkPassword(password, playerData.getPasswordHash())) {
-            sessionManager.createSession(player);
-            playerDataDAO.updateLastLoginIp(player.getUniqueId(), playerIP);
+        result.whenComplete((authResult, e) -> {
+            // Release first so the player can retry as soon as they see the result.
+            pendingAttempts.remove(playerUUID, pending);
+            if (e != null) {
+                pending.completeExceptionally(e);
+            } else {
+                pending.complete(authResult);
+            }
+        });
+        return pending;
+    }
+
+    // Upgrades a stored hash to the current parameters in the background; a rejected job just waits for the next login.
+    private void rehashPassword(PlayerData playerData, String password) {
+        UUID playerUUID = playerData.getUuid();
+        hashingExecutor.submit(playerUUID, () -> passwordService.hashPassword(password))
+                .thenCompose(newHash -> supplyOnDatabase(() -> {
+                    try {
+                        playerDataDAO.updatePasswordHash(playerUUID, newHash);
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                    authProfileManager.updatePlayerData(new PlayerData(playerUUID, playerData.getUsername(), newHash,
+                            playerData.getLastLoginIp(), playerData.getRegistrationDate(), playerData.getLastLogin()));
+                    return null;
+                }))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (!(cause instanceof RejectedExecutionException)) {
+                        messageManager.plugin.getLogger().warning("Could not upgrade the password hash of " + playerData.getUsername() + ": " + cause);
+                    }
+                    return null;
+                });
+    }
+
+    // Connected players have their profile held since pre-login, so a registered account is served
+    // from memory. "Not registered" may have gone stale since then (e.g. the account was registered on
+    // another server sharing the database), so that answer is always checked against the database; the
+    // insert in registerAsync still has the final say.
+    private CompletableFuture<Optional<PlayerData>> loadPlayerData(UUID playerUUID) {
+        AuthProfile profile = authProfileManager.getProfile(playerUUID);
+        if (profile != null && profile.getPlayerData().isPresent()) {
+            return CompletableFuture.completedFuture(profile.getPlayerData());
+        }
+        return supplyOnDatabase(() -> {
+            Optional<PlayerData> data;
+            try {
+                playerDataDAO.evictCached(playerUUID);
+                data = playerDataDAO.findPlayer(playerUUID);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+            data.ifPresent(authProfileManager::updatePlayerData);
+            return data;
+        });
+    }
 
-            rateLimitingService.recordSuccessfulLogin(player.getUniqueId(), playerIP);
+    // A full database queue fails the future (reported as SERVER_BUSY) instead of throwing at the caller.
+    private <T> CompletableFuture<T> supplyOnDatabase(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, databaseExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            return AuthResult.SUCCESS;
-        } else {
-            rateLimitingService.recordFailedAttempt(player.getUniqueId(), playerIP);
-            return AuthResult.INCORRECT_PASSWORD;
+    private AuthResult handleFailure(String playerName, String action, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RejectedExecutionException) {
+            return AuthResult.SERVER_BUSY;
         }
+        if (cause instanceof DatabaseUnavailableException) {
+            return AuthResult.BACKEND_UNAVAILABLE;
+        }
+        messageManager.plugin.getLogger().severe("Failed to " + action + " player " + playerName + ": " + cause);
+        return AuthResult.FAILURE;
     }
 
-    private String getPlayerIP(Player player) {
+    // Null if the address isn't known. The text form is only built when it gets stored, see toIP.
+    private InetAddress getPlayerAddress(Player player) {
         if (player == null) {
-            return "unknown";
+            return null;
         }
 
         try {
             InetSocketAddress address = player.getAddress();
-            if (address != null && address.getAddress() != null) {
-                return address.getAddress().getHostAddress();
+            if (address != null) {
+                return address.getAddress();
             }
         } catch (Exception e) {
             if (messageManager != null && messageManager.plugin != null) {
@@ -129,7 +275,11 @@ public class AuthenticationService {
                         "Failed to get IP for player " + player.getName() + ": " + e.getMessage());
             }
         }
-        return "unknown";
+        return null;
+    }
+
+    private static String toIP(InetAddress address) {
+        return address != null ? address.getHostAddress() : "unknown";
     }
 
     public void handleAuthResult(Player player, AuthResult result, String command) {
@@ -154,8 +304,7 @@ public class AuthenticationService {
                 messageManager.sendMessage(player, "password_incorrect");
                 break;
             case RATE_LIMITED:
-                String playerIP = getPlayerIP(player);
-                long cooldown = rateLimitingService.getRemainingCooldown(player.getUniqueId(), playerIP);
+                long cooldown = rateLimitingService.getRemainingCooldown(player.getUniqueId(), getPlayerAddress(player));
                 messageManager.sendMessage(player, "rate_limited", String.valueOf(cooldown));
                 break;
             case INVALID_PASSWORD:
@@ -163,6 +312,15 @@ public class AuthenticationService {
                         String.valueOf(passwordService.getMinPasswordLength()),
                         String.valueOf(passwordService.getMaxPasswordLength()));
                 break;
+            case SERVER_BUSY:
+                messageManager.sendMessage(player, "server_busy");
+                break;
+            case BACKEND_UNAVAILABLE:
+                messageManager.sendMessage(player, "auth_backend_unavailable");
+                break;
+            case ATTEMPT_IN_PROGRESS:
+                messageManager.sendMessage(player, "auth_in_progress");
+                break;
             case FAILURE:
                 messageManager.sendMessage(player, "error_generic");
                 break;
@@ -0,0 +1,100 @@
+package io.github.poelsk.authreloaded.auth;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Dedicated pool for BCrypt work, kept off the server's shared async scheduler.
+// Both the queue and the jobs per player are bounded; overflow is rejected.
+public class HashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Map<UUID, Integer> inFlight = new ConcurrentHashMap<>();
+    private final int maxPerPlayer;
+
+    public HashingExecutor(int threads, int queueSize, int maxPerPlayer) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        this.maxPerPlayer = Math.max(1, maxPerPlayer);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+            Thread t = new Thread(r, "AuthReloaded-Hashing-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> CompletableFuture<T> submit(UUID owner, Supplier<T> task) {
+        if (!tryAcquire(owner)) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many hashing jobs in flight for " + owner));
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                T result;
+                try {
+                    result = task.get();
+                } catch (Throwable t) {
+                    release(owner);
+                    future.completeExceptionally(t);
+                    return;
+                }
+                // Free the slot before completing so the caller can chain another job right away.
+                release(owner);
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            release(owner);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private boolean tryAcquire(UUID owner) {
+        boolean[] acquired = new boolean[1];
+        inFlight.compute(owner, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxPerPlayer) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(UUID owner) {
+        inFlight.computeIfPresent(owner, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        inFlight.clear();
+    }
+}
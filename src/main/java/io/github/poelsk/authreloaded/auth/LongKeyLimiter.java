@@ -0,0 +1,362 @@
+package io.github.poelsk.authreloaded.auth;
+
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Sliding-window attempt counter keyed by a primitive long, such as an IPv4 address or an IPv6 prefix.
+// Keys and their packed states (see SlidingWindow) sit in two open-addressing arrays with linear
+// probing, so tracking an address allocates nothing and attempts never block each other.
+//
+// A state of 0 marks a key with nothing counted. Moving a key off 0 schedules its expiry task on the
+// timing wheel, which sets it back to 0 once its attempts have slid out of the window. Slots stay
+// claimed until the table is copied, which happens when it fills up or when most keys have expired.
+// The copy freezes every slot of the old table first, free keys to MOVED_KEY and states to MOVED, so
+// an update that races with it fails its compare-and-set and retries on the new table once the copy
+// is published.
+public class LongKeyLimiter {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long MOVED_KEY = Long.MIN_VALUE + 1;
+    // Its window start would be past 2106, so no real state has this value.
+    private static final long MOVED = -1L;
+    private static final int MIN_CAPACITY = 64;
+
+    private final SlidingWindow window;
+    private final TimingWheel timingWheel;
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    public LongKeyLimiter(int maxAttempts, long window, TimeUnit unit, TimingWheel timingWheel) {
+        this.window = new SlidingWindow(maxAttempts, window, unit);
+        this.timingWheel = timingWheel;
+    }
+
+    public void recordAttempt(long key, long nowMillis) {
+        long slotKey = slotKey(key);
+        while (true) {
+            Table current = table;
+            int slot = current.claim(slotKey);
+            if (slot == -1) {
+                rebuild(current);
+                continue;
+            }
+            if (slot >= 0 && update(current, slot, key, nowMillis)) {
+                return;
+            }
+            awaitResize();
+        }
+    }
+
+    public boolean isLimited(long key, long nowMillis) {
+        long state = load(key);
+        return state != 0 && window.isLimited(state, nowMillis);
+    }
+
+    // Seconds until the key is allowed again, rounded up; 0 if it isn't limited.
+    public long getRemainingSeconds(long key, long nowMillis) {
+        long state = load(key);
+        return state == 0 ? 0 : window.remainingSeconds(state, nowMillis);
+    }
+
+    // Clears the counts but leaves the key to its expiry task.
+    public void reset(long key) {
+        long slotKey = slotKey(key);
+        while (true) {
+            Table current = table;
+            int slot = current.find(slotKey);
+            if (slot == -1) {
+                return;
+            }
+            if (slot >= 0) {
+                long state = current.states.get(slot);
+                if (state == 0 || (state != MOVED && current.states.compareAndSet(slot, state, window.clear(state)))) {
+                    return;
+                }
+                if (state != MOVED) {
+                    continue;
+                }
+            }
+            awaitResize();
+        }
+    }
+
+    // Writes the window length and every key with attempts still in it, ended by a 0 state.
+    public int writeTo(RateLimitSnapshot.Output out, long nowMillis) throws IOException {
+        // Holding the monitor keeps the table from being copied while it is read.
+        synchronized (this) {
+            Table current = table;
+            int written = 0;
+            out.writeLong(window.getWindowSeconds());
+            for (int i = 0; i < current.capacity(); i++) {
+                long key = current.keys.get(i);
+                long state = current.states.get(i);
+                if (key != EMPTY && key != MOVED_KEY && state != 0 && !window.isEmpty(state, nowMillis)) {
+                    out.writeLong(state);
+                    out.writeLong(key);
+                    written++;
+                }
+            }
+            out.writeLong(0);
+            return written;
+        }
+    }
+
+    // Reads what writeTo wrote and restores the keys whose attempts are still in the window. Attempts
+    // counted since startup are added to them, and entries written for another window length are skipped.
+    public int readFrom(RateLimitSnapshot.Input in, long nowMillis) throws IOException {
+        boolean sameWindow = in.readLong() == window.getWindowSeconds();
+        int restored = 0;
+        while (true) {
+            long state = in.readLong();
+            if (state == 0) {
+                return restored;
+            }
+            long key = in.readLong();
+            if (sameWindow && !window.isEmpty(state, nowMillis)) {
+                restore(key, state, nowMillis);
+                restored++;
+            }
+        }
+    }
+
+    // Keys with attempts still in the window.
+    public int size() {
+        return table.live.get();
+    }
+
+    public int getMaxAttempts() {
+        return window.getMaxAttempts();
+    }
+
+    public long getWindowSeconds() {
+        return window.getWindowSeconds();
+    }
+
+    private boolean update(Table current, int slot, long key, long nowMillis) {
+        while (true) {
+            long state = current.states.get(slot);
+            if (state == MOVED) {
+                return false;
+            }
+            long updated = window.record(state, nowMillis);
+            if (current.states.compareAndSet(slot, state, updated)) {
+                if (state == 0) {
+                    current.live.incrementAndGet();
+                    scheduleExpiry(key, updated, nowMillis);
+                }
+                return true;
+            }
+        }
+    }
+
+    private void restore(long key, long restored, long nowMillis) {
+        long slotKey = slotKey(key);
+        while (true) {
+            Table current = table;
+            int slot = current.claim(slotKey);
+            if (slot == -1) {
+                rebuild(current);
+                continue;
+            }
+            if (slot >= 0) {
+                long state = current.states.get(slot);
+                if (state != MOVED) {
+                    long merged = state == 0 ? restored : window.merge(state, restored, nowMillis);
+                    if (current.states.compareAndSet(slot, state, merged)) {
+                        if (state == 0) {
+                            current.live.incrementAndGet();
+                            scheduleExpiry(key, merged, nowMillis);
+                        }
+                        return;
+                    }
+                    continue;
+                }
+            }
+            awaitResize();
+        }
+    }
+
+    private void scheduleExpiry(long key, long state, long nowMillis) {
+        timingWheel.schedule(() -> expire(key), window.expiresAtMillis(state) - nowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire(long key) {
+        long slotKey = slotKey(key);
+        long now = System.currentTimeMillis();
+        while (true) {
+            Table current = table;
+            int slot = current.find(slotKey);
+            if (slot == -1) {
+                return;
+            }
+            if (slot >= 0) {
+                long state = current.states.get(slot);
+                if (state == 0) {
+                    return;
+                }
+                if (state != MOVED) {
+                    if (!window.isEmpty(state, now)) {
+                        scheduleExpiry(key, state, now);
+                        return;
+                    }
+                    if (current.states.compareAndSet(slot, state, 0)) {
+                        // Copy once most claimed slots are dead, so the cost is spread over the expiries.
+                        if (current.live.decrementAndGet() < current.used.get() / 4 && current.capacity() > MIN_CAPACITY) {
+                            rebuild(current);
+                        }
+                        return;
+                    }
+                    continue;
+                }
+            }
+            awaitResize();
+        }
+    }
+
+    private long load(long key) {
+        long slotKey = slotKey(key);
+        while (true) {
+            Table current = table;
+            int slot = current.find(slotKey);
+            if (slot == -1) {
+                return 0;
+            }
+            if (slot >= 0) {
+                long state = current.states.get(slot);
+                if (state != MOVED) {
+                    return state;
+                }
+            }
+            awaitResize();
+        }
+    }
+
+    private void rebuild(Table old) {
+        synchronized (this) {
+            // Another thread may have replaced the table while this one waited.
+            if (table == old) {
+                table = copy(old);
+            }
+        }
+    }
+
+    // The copying thread holds the monitor until the new table is published.
+    private void awaitResize() {
+        synchronized (this) {
+            // Nothing to do; acquiring the monitor is the wait.
+        }
+    }
+
+    // Copies the keys that have a state into a new table. Only called while holding the monitor.
+    private Table copy(Table old) {
+        int capacity = old.capacity();
+        long[] keys = new long[capacity];
+        long[] states = new long[capacity];
+        int live = 0;
+        for (int i = 0; i < capacity; i++) {
+            long key = old.keys.get(i);
+            if (key == EMPTY && old.keys.compareAndSet(i, EMPTY, MOVED_KEY)) {
+                continue;
+            }
+            // The slot was just claimed if the freeze above failed, so its key is set now.
+            key = old.keys.get(i);
+            long state = old.states.getAndSet(i, MOVED);
+            if (state != 0) {
+                keys[live] = key;
+                states[live] = state;
+                live++;
+            }
+        }
+
+        // Keep the load factor at or below a quarter after rebuilding, so the table doesn't grow again soon.
+        Table rebuilt = new Table(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, live) * 4 - 1) << 1));
+        for (int i = 0; i < live; i++) {
+            rebuilt.states.set(rebuilt.claim(keys[i]), states[i]);
+        }
+        rebuilt.live.set(live);
+        return rebuilt;
+    }
+
+    // EMPTY and MOVED_KEY mark free slots, so keys equal to them share a slot with a neighbour. That only
+    // happens for the IPv6 prefixes 8000::/64 and 8000:0:0:1::/64, which are unassigned.
+    private static long slotKey(long key) {
+        return key == EMPTY || key == MOVED_KEY ? MOVED_KEY + 1 : key;
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static final class Table {
+
+        private final AtomicLongArray keys;
+        private final AtomicLongArray states;
+        private final AtomicInteger used = new AtomicInteger();
+        private final AtomicInteger live = new AtomicInteger();
+        private final int mask;
+        private final int maxUsed;
+
+        private Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.states = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.maxUsed = capacity / 2;
+            for (int i = 0; i < capacity; i++) {
+                keys.set(i, EMPTY);
+            }
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        // The key's slot, -1 if it isn't in the table, or -2 if the table is being copied.
+        private int find(long key) {
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long current = keys.get(i);
+                if (current == key) {
+                    return i;
+                }
+                if (current == EMPTY) {
+                    return -1;
+                }
+                if (current == MOVED_KEY) {
+                    return -2;
+                }
+            }
+        }
+
+        // The key's slot, taking a free one if needed; -1 if the table has to grow first, or -2 if the
+        // table is being copied.
+        private int claim(long key) {
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long current = keys.get(i);
+                if (current == key) {
+                    return i;
+                }
+                if (current == MOVED_KEY) {
+                    return -2;
+                }
+                if (current == EMPTY) {
+                    if (used.get() >= maxUsed) {
+                        return -1;
+                    }
+                    if (keys.compareAndSet(i, EMPTY, key)) {
+                        used.incrementAndGet();
+                        return i;
+                    }
+                    // Lost the slot to another key, to this same key from another thread, or to a copy.
+                    i = (i - 1) & mask;
+                }
+            }
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package io.github.poelsk.authreloaded.auth;
 
-import org.mindrot.jbcrypt.BCrypt;
+import io.github.poelsk.authreloaded.auth.hash.BCryptHasher;
+import io.github.poelsk.authreloaded.auth.hash.PasswordHasher;
+import io.github.poelsk.authreloaded.auth.hash.Pbkdf2Hasher;
+import io.github.poelsk.authreloaded.auth.hash.Sha256Hasher;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class PasswordService {
 
-    private static final int WORKLOAD = 12;
+    private static final int DEFAULT_WORKLOAD = 12;
     private static final int MIN_PASSWORD_LENGTH = 6;
     private static final int MAX_PASSWORD_LENGTH = 128;
 
+    private final PasswordHasher primaryHasher;
+    private final List<PasswordHasher> hashers;
+
     public enum ValidationResult {
         VALID,
         TOO_SHORT,
@@ -16,6 +25,22 @@ public class PasswordService {
         EMPTY_OR_NULL
     }
 
+    public PasswordService() {
+        this(new BCryptHasher(DEFAULT_WORKLOAD), List.of(new Pbkdf2Hasher(600000), new Sha256Hasher()));
+    }
+
+    // New hashes always use primaryHasher; existing hashes are verified by whichever hasher recognises their prefix.
+    public PasswordService(PasswordHasher primaryHasher, List<PasswordHasher> additionalHashers) {
+        this.primaryHasher = primaryHasher;
+        this.hashers = new ArrayList<>();
+        this.hashers.add(primaryHasher);
+        for (PasswordHasher hasher : additionalHashers) {
+            if (hasher != primaryHasher) {
+                this.hashers.add(hasher);
+            }
+        }
+    }
+
     public ValidationResult validatePassword(String password) {
         if (password == null || password.isEmpty()) {
             return ValidationResult.EMPTY_OR_NULL;
@@ -36,19 +61,51 @@ public class PasswordService {
         return ValidationResult.VALID;
     }
     public String hashPassword(String plaintextPassword) {
-        String salt = BCrypt.gensalt(WORKLOAD);
-        return BCrypt.hashpw(plaintextPassword, salt);
+        return primaryHasher.hash(plaintextPassword);
     }
     public boolean checkPassword(String plaintextPassword, String hashedPassword) {
-        if (hashedPassword == null || !hashedPassword.startsWith("$2a$")) {
+        PasswordHasher hasher = findHasher(hashedPassword);
+        if (hasher == null) {
             return false;
         }
         try {
-            return BCrypt.checkpw(plaintextPassword, hashedPassword);
-        } catch (IllegalArgumentException e) {
+            return hasher.verify(plaintextPassword, hashedPassword);
+        } catch (RuntimeException e) {
+            // A stored hash the algorithm rejects, e.g. parameters its implementation refuses; it can never match.
+            return false;
+        }
+    }
+
+    public boolean needsRehash(String hashedPassword) {
+        PasswordHasher hasher = findHasher(hashedPassword);
+        if (hasher == null) {
             return false;
         }
+        return hasher != primaryHasher || hasher.needsRehash(hashedPassword);
+    }
+
+    // False for unknown formats and for hashes whose parameters exceed what verification accepts.
+    public boolean isSupportedHash(String hashedPassword) {
+        PasswordHasher hasher = findHasher(hashedPassword);
+        return hasher != null && hasher.accepts(hashedPassword);
+    }
+
+    private PasswordHasher findHasher(String hashedPassword) {
+        if (hashedPassword == null) {
+            return null;
+        }
+        for (PasswordHasher hasher : hashers) {
+            if (hasher.supports(hashedPassword)) {
+                return hasher;
+            }
+        }
+        return null;
     }
+
+    public PasswordHasher getPrimaryHasher() {
+        return primaryHasher;
+    }
+
     public int getMinPasswordLength() {
         return MIN_PASSWORD_LENGTH;
     }
@@ -56,4 +113,4 @@ public class PasswordService {
     public int getMaxPasswordLength() {
         return MAX_PASSWORD_LENGTH;
     }
-}
\ No newline at end of file
+}
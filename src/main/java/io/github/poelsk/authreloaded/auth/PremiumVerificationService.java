@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import io.github.poelsk.authreloaded.AuthReloaded;
+import io.github.poelsk.authreloaded.cache.TimingWheel;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
@@ -17,24 +18,15 @@ import java.security.MessageDigest;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class PremiumVerificationService {
 
     private final AuthReloaded plugin;
     private final Map<UUID, Long> lastVerificationAttempt = new ConcurrentHashMap<>();
-    private final Map<UUID, Boolean> verificationCache = new ConcurrentHashMap<>();
-    private final Map<UUID, ScheduledFuture<?>> cacheCleanupTasks = new ConcurrentHashMap<>();
+    private final Map<UUID, CachedResult> verificationCache = new ConcurrentHashMap<>();
     private final Map<UUID, String> playerSkinHashes = new ConcurrentHashMap<>();
-
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
-        Thread t = new Thread(r, "AuthReloaded-Premium-Cache");
-        t.setDaemon(true);
-        return t;
-    });
+    private final TimingWheel timingWheel;
 
     private static final long RATE_LIMIT_MS = 30000;
     private static final long CACHE_DURATION_MS = 300000;
@@ -52,6 +44,7 @@ public class PremiumVerificationService {
 
     public PremiumVerificationService(AuthReloaded plugin) {
         this.plugin = plugin;
+        this.timingWheel = plugin.getTimingWheel();
     }
 
     public VerificationResult verifyPremium(Player player) {
@@ -67,10 +60,10 @@ public class PremiumVerificationService {
             return VerificationResult.RATE_LIMITED;
         }
 
-        Boolean cachedResult = verificationCache.get(playerUUID);
+        CachedResult cachedResult = verificationCache.get(playerUUID);
         if (cachedResult != null) {
-            plugin.getLogger().info("[PremiumVerification] Using cached result for player: " + playerName + " - " + (cachedResult ? "PREMIUM" : "NOT_PREMIUM"));
-            return cachedResult ? VerificationResult.VERIFIED_PREMIUM : VerificationResult.NOT_PREMIUM;
+            plugin.getLogger().info("[PremiumVerification] Using cached result for player: " + playerName + " - " + (cachedResult.premium ? "PREMIUM" : "NOT_PREMIUM"));
+            return cachedResult.premium ? VerificationResult.VERIFIED_PREMIUM : VerificationResult.NOT_PREMIUM;
         }
 
         lastVerificationAttempt.put(playerUUID, System.currentTimeMillis());
@@ -349,49 +342,29 @@ public class PremiumVerificationService {
     }
 
     private void cacheResult(UUID playerUUID, boolean isPremium) {
-        verificationCache.put(playerUUID, isPremium);
-
-        ScheduledFuture<?> oldTask = cacheCleanupTasks.get(playerUUID);
-        if (oldTask != null && !oldTask.isDone()) {
-            oldTask.cancel(false);
-        }
+        CachedResult result = new CachedResult(isPremium);
+        verificationCache.put(playerUUID, result);
 
-        ScheduledFuture<?> cleanupTask = scheduler.schedule(() -> {
-            verificationCache.remove(playerUUID);
-            cacheCleanupTasks.remove(playerUUID);
-        }, CACHE_DURATION_MS, TimeUnit.MILLISECONDS);
-
-        cacheCleanupTasks.put(playerUUID, cleanupTask);
+        // Only removes this exact result, so a newer one cached meanwhile keeps its full duration.
+        timingWheel.schedule(() -> verificationCache.remove(playerUUID, result), CACHE_DURATION_MS, TimeUnit.MILLISECONDS);
     }
 
     public void clearCache(UUID playerUUID) {
         verificationCache.remove(playerUUID);
         lastVerificationAttempt.remove(playerUUID);
         playerSkinHashes.remove(playerUUID);
-
-        ScheduledFuture<?> task = cacheCleanupTasks.remove(playerUUID);
-        if (task != null && !task.isDone()) {
-            task.cancel(false);
-        }
     }
 
     public void shutdown() {
-        cacheCleanupTasks.values().forEach(task -> {
-            if (!task.isDone()) {
-                task.cancel(false);
-            }
-        });
-        cacheCleanupTasks.clear();
+        verificationCache.clear();
         playerSkinHashes.clear();
+    }
 
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
+    private static final class CachedResult {
+        private final boolean premium;
+
+        private CachedResult(boolean premium) {
+            this.premium = premium;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package io.github.poelsk.authreloaded.auth;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Rate limiter state saved to disk, so a restart doesn't hand every attacker a fresh attempt budget.
+// The file is a header followed by each limiter's entries as raw longs. Saving streams them through a
+// direct buffer into a temporary file that is then moved into place, so a crash mid-save keeps the
+// previous snapshot; loading maps the file and reads it in place.
+public class RateLimitSnapshot {
+
+    private static final int MAGIC = 0x41524C53;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+
+    public RateLimitSnapshot(File file) {
+        this.file = file;
+    }
+
+    // Returns the number of entries written.
+    public synchronized int save(RateLimitingService rateLimitingService) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        int written;
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            written = rateLimitingService.writeState(out);
+            out.flush();
+            // On disk before the move, so a power loss can't leave a renamed but empty snapshot behind.
+            channel.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    // Returns the number of entries restored; expired ones are skipped.
+    public int load(RateLimitingService rateLimitingService) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Input in = new Input(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unrecognized rate limit snapshot " + file.getName());
+            }
+            return rateLimitingService.readState(in);
+        }
+    }
+
+    public static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public void writeInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            if (buffer.remaining() < Long.BYTES) {
+                flush();
+            }
+            buffer.putLong(value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    public static final class Input {
+
+        private final MappedByteBuffer buffer;
+
+        private Input(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public int readInt() throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new EOFException("Rate limit snapshot is truncated");
+            }
+            return buffer.getInt();
+        }
+
+        public long readLong() throws IOException {
+            if (buffer.remaining() < Long.BYTES) {
+                throw new EOFException("Rate limit snapshot is truncated");
+            }
+            return buffer.getLong();
+        }
+    }
+}
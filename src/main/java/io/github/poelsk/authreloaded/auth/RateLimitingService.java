@@ -1,31 +1,41 @@
 package io.github.poelsk.authreloaded.auth;
 
-import java.util.Map;
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class RateLimitingService {
 
-    private final Map<UUID, AttemptTracker> loginAttempts = new ConcurrentHashMap<>();
-    private final Map<String, AttemptTracker> ipAttempts = new ConcurrentHashMap<>();
+    private final SlidingWindowLimiter<UUID> playerLimiter;
 
-    private final ScheduledExecutorService cleanup = Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread t = new Thread(r, "AuthReloaded-RateLimit-Cleanup");
-        t.setDaemon(true);
-        return t;
-    });
+    // Addresses are keyed by their bits rather than their text form, see AddressKeys. The subnet limits
+    // catch attackers rotating through nearby addresses.
+    private final LongKeyLimiter ipv4HostLimiter;
+    private final LongKeyLimiter ipv4SubnetLimiter;
+    private final LongKeyLimiter ipv6HostLimiter;
+    private final LongKeyLimiter ipv6SubnetLimiter;
 
     private static final int MAX_ATTEMPTS_PER_PLAYER = 5;
     private static final int MAX_ATTEMPTS_PER_IP = 15;
-    private static final long COOLDOWN_MINUTES = 10;
-    private static final long CLEANUP_INTERVAL_MINUTES = 5;
+    private static final int MAX_ATTEMPTS_PER_SUBNET = 40;
+    private static final long WINDOW_SECONDS = 600;
+
+    public RateLimitingService(TimingWheel timingWheel) {
+        this(timingWheel, MAX_ATTEMPTS_PER_PLAYER, WINDOW_SECONDS, MAX_ATTEMPTS_PER_IP, WINDOW_SECONDS, MAX_ATTEMPTS_PER_SUBNET, WINDOW_SECONDS);
+    }
 
-    public RateLimitingService() {
-        cleanup.scheduleAtFixedRate(this::cleanupExpiredEntries,
-                CLEANUP_INTERVAL_MINUTES, CLEANUP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    // Entries expire through the timing wheel as their attempts slide out of the window.
+    public RateLimitingService(TimingWheel timingWheel, int maxAttemptsPerPlayer, long playerWindowSeconds,
+                               int maxAttemptsPerIp, long ipWindowSeconds, int maxAttemptsPerSubnet, long subnetWindowSeconds) {
+        this.playerLimiter = new SlidingWindowLimiter<>(maxAttemptsPerPlayer, playerWindowSeconds, TimeUnit.SECONDS, timingWheel);
+        this.ipv4HostLimiter = new LongKeyLimiter(maxAttemptsPerIp, ipWindowSeconds, TimeUnit.SECONDS, timingWheel);
+        this.ipv6HostLimiter = new LongKeyLimiter(maxAttemptsPerIp, ipWindowSeconds, TimeUnit.SECONDS, timingWheel);
+        this.ipv4SubnetLimiter = new LongKeyLimiter(maxAttemptsPerSubnet, subnetWindowSeconds, TimeUnit.SECONDS, timingWheel);
+        this.ipv6SubnetLimiter = new LongKeyLimiter(maxAttemptsPerSubnet, subnetWindowSeconds, TimeUnit.SECONDS, timingWheel);
     }
 
     public enum LimitResult {
@@ -35,9 +45,10 @@ public class RateLimitingService {
         BOTH_LIMITED
     }
 
-    public LimitResult canAttemptLogin(UUID playerUUID, String ip) {
-        boolean playerLimited = isPlayerLimited(playerUUID);
-        boolean ipLimited = isIPLimited(ip);
+    public LimitResult canAttemptLogin(UUID playerUUID, InetAddress address) {
+        long currentTime = System.currentTimeMillis();
+        boolean playerLimited = playerLimiter.isLimited(playerUUID, currentTime);
+        boolean ipLimited = isAddressLimited(address, currentTime);
 
         if (playerLimited && ipLimited) {
             return LimitResult.BOTH_LIMITED;
@@ -50,132 +61,82 @@ public class RateLimitingService {
         }
     }
 
-    public void recordFailedAttempt(UUID playerUUID, String ip) {
+    public void recordFailedAttempt(UUID playerUUID, InetAddress address) {
         long currentTime = System.currentTimeMillis();
 
-        loginAttempts.compute(playerUUID, (key, tracker) -> {
-            if (tracker == null || tracker.isExpired(currentTime)) {
-                return new AttemptTracker(currentTime);
-            } else {
-                tracker.addAttempt(currentTime);
-                return tracker;
-            }
-        });
-
-        // Record IP attempt
-        if (ip != null && !ip.equals("unknown")) {
-            ipAttempts.compute(ip, (key, tracker) -> {
-                if (tracker == null || tracker.isExpired(currentTime)) {
-                    return new AttemptTracker(currentTime);
-                } else {
-                    tracker.addAttempt(currentTime);
-                    return tracker;
-                }
-            });
+        playerLimiter.recordAttempt(playerUUID, currentTime);
+        if (address instanceof Inet4Address) {
+            long ip = AddressKeys.ipv4(address);
+            ipv4HostLimiter.recordAttempt(ip, currentTime);
+            ipv4SubnetLimiter.recordAttempt(AddressKeys.ipv4Subnet(ip), currentTime);
+        } else if (address != null) {
+            long prefix = AddressKeys.ipv6Prefix(address);
+            ipv6HostLimiter.recordAttempt(prefix, currentTime);
+            ipv6SubnetLimiter.recordAttempt(AddressKeys.ipv6Subnet(prefix), currentTime);
         }
     }
 
-    public void recordSuccessfulLogin(UUID playerUUID, String ip) {
-        loginAttempts.remove(playerUUID);
-        if (ip != null && !ip.equals("unknown")) {
-            ipAttempts.remove(ip);
+    // The subnet keeps its count, so one good login can't clear the way for the rest of the range.
+    public void recordSuccessfulLogin(UUID playerUUID, InetAddress address) {
+        playerLimiter.reset(playerUUID);
+        if (address instanceof Inet4Address) {
+            ipv4HostLimiter.reset(AddressKeys.ipv4(address));
+        } else if (address != null) {
+            ipv6HostLimiter.reset(AddressKeys.ipv6Prefix(address));
         }
     }
-    public long getRemainingCooldown(UUID playerUUID, String ip) {
-        long playerCooldown = getPlayerCooldown(playerUUID);
-        long ipCooldown = getIPCooldown(ip);
-        return Math.max(playerCooldown, ipCooldown);
-    }
-
-    private boolean isPlayerLimited(UUID playerUUID) {
-        AttemptTracker tracker = loginAttempts.get(playerUUID);
-        return tracker != null &&
-                !tracker.isExpired(System.currentTimeMillis()) &&
-                tracker.getAttemptCount() >= MAX_ATTEMPTS_PER_PLAYER;
-    }
 
-    private boolean isIPLimited(String ip) {
-        if (ip == null || ip.equals("unknown")) {
-            return false;
-        }
-
-        AttemptTracker tracker = ipAttempts.get(ip);
-        return tracker != null &&
-                !tracker.isExpired(System.currentTimeMillis()) &&
-                tracker.getAttemptCount() >= MAX_ATTEMPTS_PER_IP;
-    }
-
-    private long getPlayerCooldown(UUID playerUUID) {
-        AttemptTracker tracker = loginAttempts.get(playerUUID);
-        if (tracker == null || tracker.isExpired(System.currentTimeMillis())) {
-            return 0;
-        }
-
-        long elapsed = System.currentTimeMillis() - tracker.getFirstAttemptTime();
-        long remaining = TimeUnit.MINUTES.toMillis(COOLDOWN_MINUTES) - elapsed;
-        return Math.max(0, TimeUnit.MILLISECONDS.toMinutes(remaining));
-    }
-
-    private long getIPCooldown(String ip) {
-        if (ip == null || ip.equals("unknown")) {
-            return 0;
-        }
-
-        AttemptTracker tracker = ipAttempts.get(ip);
-        if (tracker == null || tracker.isExpired(System.currentTimeMillis())) {
-            return 0;
+    // Seconds until both the player and the address may try again.
+    public long getRemainingCooldown(UUID playerUUID, InetAddress address) {
+        long currentTime = System.currentTimeMillis();
+        long playerCooldown = playerLimiter.getRemainingSeconds(playerUUID, currentTime);
+        long ipCooldown = 0;
+        if (address instanceof Inet4Address) {
+            long ip = AddressKeys.ipv4(address);
+            ipCooldown = Math.max(ipv4HostLimiter.getRemainingSeconds(ip, currentTime),
+                    ipv4SubnetLimiter.getRemainingSeconds(AddressKeys.ipv4Subnet(ip), currentTime));
+        } else if (address != null) {
+            long prefix = AddressKeys.ipv6Prefix(address);
+            ipCooldown = Math.max(ipv6HostLimiter.getRemainingSeconds(prefix, currentTime),
+                    ipv6SubnetLimiter.getRemainingSeconds(AddressKeys.ipv6Subnet(prefix), currentTime));
         }
-
-        long elapsed = System.currentTimeMillis() - tracker.getFirstAttemptTime();
-        long remaining = TimeUnit.MINUTES.toMillis(COOLDOWN_MINUTES) - elapsed;
-        return Math.max(0, TimeUnit.MILLISECONDS.toMinutes(remaining));
+        return Math.max(playerCooldown, ipCooldown);
     }
 
-    private void cleanupExpiredEntries() {
+    // Writes every limiter's live entries; see RateLimitSnapshot.
+    public int writeState(RateLimitSnapshot.Output out) throws IOException {
         long currentTime = System.currentTimeMillis();
-
-        loginAttempts.entrySet().removeIf(entry -> entry.getValue().isExpired(currentTime));
-        ipAttempts.entrySet().removeIf(entry -> entry.getValue().isExpired(currentTime));
+        int written = playerLimiter.writeTo(out, (output, uuid) -> {
+            output.writeLong(uuid.getMostSignificantBits());
+            output.writeLong(uuid.getLeastSignificantBits());
+        }, currentTime);
+        written += ipv4HostLimiter.writeTo(out, currentTime);
+        written += ipv4SubnetLimiter.writeTo(out, currentTime);
+        written += ipv6HostLimiter.writeTo(out, currentTime);
+        written += ipv6SubnetLimiter.writeTo(out, currentTime);
+        return written;
     }
 
-    public void shutdown() {
-        cleanup.shutdown();
-        try {
-            if (!cleanup.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanup.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            cleanup.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
+    public int readState(RateLimitSnapshot.Input in) throws IOException {
+        long currentTime = System.currentTimeMillis();
+        int restored = playerLimiter.readFrom(in, input -> new UUID(input.readLong(), input.readLong()), currentTime);
+        restored += ipv4HostLimiter.readFrom(in, currentTime);
+        restored += ipv4SubnetLimiter.readFrom(in, currentTime);
+        restored += ipv6HostLimiter.readFrom(in, currentTime);
+        restored += ipv6SubnetLimiter.readFrom(in, currentTime);
+        return restored;
     }
 
-    private static class AttemptTracker {
-        private final long firstAttemptTime;
-        private int attemptCount;
-        private long lastAttemptTime;
-
-        public AttemptTracker(long firstAttemptTime) {
-            this.firstAttemptTime = firstAttemptTime;
-            this.attemptCount = 1;
-            this.lastAttemptTime = firstAttemptTime;
-        }
-
-        public void addAttempt(long currentTime) {
-            this.attemptCount++;
-            this.lastAttemptTime = currentTime;
-        }
-
-        public boolean isExpired(long currentTime) {
-            return (currentTime - firstAttemptTime) > TimeUnit.MINUTES.toMillis(COOLDOWN_MINUTES);
-        }
-
-        public int getAttemptCount() {
-            return attemptCount;
-        }
-
-        public long getFirstAttemptTime() {
-            return firstAttemptTime;
+    private boolean isAddressLimited(InetAddress address, long currentTime) {
+        if (address instanceof Inet4Address) {
+            long ip = AddressKeys.ipv4(address);
+            return ipv4HostLimiter.isLimited(ip, currentTime)
+                    || ipv4SubnetLimiter.isLimited(AddressKeys.ipv4Subnet(ip), currentTime);
+        } else if (address != null) {
+            long prefix = AddressKeys.ipv6Prefix(address);
+            return ipv6HostLimiter.isLimited(prefix, currentTime)
+                    || ipv6SubnetLimiter.isLimited(AddressKeys.ipv6Subnet(prefix), currentTime);
         }
+        return false;
     }
-}
\ No newline at end of file
+}
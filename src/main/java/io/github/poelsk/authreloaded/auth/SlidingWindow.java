@@ -0,0 +1,143 @@
+package io.github.poelsk.authreloaded.auth;
+
+import java.util.concurrent.TimeUnit;
+
+// Sliding-window attempt count packed into one long: the start of the current fixed window in epoch
+// seconds (upper 32 bits), the previous window's count (16 bits) and the current window's count
+// (16 bits). The sliding count weighs the previous window by how much of it still overlaps the last
+// windowSeconds. All methods are pure, so callers update the long with a compare-and-set.
+final class SlidingWindow {
+
+    private static final int COUNT_BITS = 16;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    // Counts saturate here, so a higher limit could never be reached.
+    static final int MAX_ATTEMPTS = (int) COUNT_MASK;
+
+    private final int maxAttempts;
+    private final long windowSeconds;
+    private final long windowMillis;
+
+    SlidingWindow(int maxAttempts, long window, TimeUnit unit) {
+        this.maxAttempts = Math.min(Math.max(1, maxAttempts), MAX_ATTEMPTS);
+        this.windowSeconds = Math.max(1, unit.toSeconds(window));
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    // The state after one more attempt at nowMillis.
+    long record(long state, long nowMillis) {
+        long rolled = roll(state, nowMillis);
+        long count = Math.min(currentCount(rolled) + 1, COUNT_MASK);
+        return (rolled & ~COUNT_MASK) | count;
+    }
+
+    boolean isLimited(long state, long nowMillis) {
+        return estimate(roll(state, nowMillis), nowMillis) >= maxAttempts;
+    }
+
+    // True once every attempt has slid out of the window.
+    boolean isEmpty(long state, long nowMillis) {
+        long rolled = roll(state, nowMillis);
+        return previousCount(rolled) == 0 && currentCount(rolled) == 0;
+    }
+
+    // The sliding count of attempts at nowMillis.
+    double count(long state, long nowMillis) {
+        return estimate(roll(state, nowMillis), nowMillis);
+    }
+
+    // The state with both counts cleared. Its window start is kept, so it is never 0.
+    long clear(long state) {
+        return state & ~((COUNT_MASK << COUNT_BITS) | COUNT_MASK);
+    }
+
+    // The state counting the attempts of both, as of nowMillis. Counts in the same window are added.
+    long merge(long state, long other, long nowMillis) {
+        long rolled = roll(state, nowMillis);
+        long otherRolled = roll(other, nowMillis);
+        if (rolled >>> 32 != otherRolled >>> 32) {
+            // Only after the clock went backwards; keep whichever counts more attempts.
+            return estimate(rolled, nowMillis) >= estimate(otherRolled, nowMillis) ? rolled : otherRolled;
+        }
+        long previous = Math.min(previousCount(rolled) + previousCount(otherRolled), COUNT_MASK);
+        long current = Math.min(currentCount(rolled) + currentCount(otherRolled), COUNT_MASK);
+        return clear(rolled) | (previous << COUNT_BITS) | current;
+    }
+
+    // When every attempt in the state will have slid out of the window.
+    long expiresAtMillis(long state) {
+        return windowStartMillis(state) + 2 * windowMillis;
+    }
+
+    // Seconds until the state allows another attempt, rounded up; 0 if it isn't limited.
+    long remainingSeconds(long state, long nowMillis) {
+        long rolled = roll(state, nowMillis);
+        if (estimate(rolled, nowMillis) < maxAttempts) {
+            return 0;
+        }
+
+        long windowStart = windowStartMillis(rolled);
+        long previous = previousCount(rolled);
+        long current = currentCount(rolled);
+        long allowedAt;
+        if (current < maxAttempts && previous > 0) {
+            // Still inside this window, once enough of the previous window has slid out.
+            allowedAt = windowStart + (long) Math.ceil(windowMillis * (1 - (double) (maxAttempts - current) / previous));
+        } else {
+            // In the next window, once enough of this window has slid out.
+            allowedAt = windowStart + windowMillis + (long) Math.ceil(windowMillis * (1 - (double) maxAttempts / current));
+        }
+        // At allowedAt the count is exactly the limit, which still counts as limited.
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(allowedAt + 1 - nowMillis + 999));
+    }
+
+    // Moves the state forward to the window containing nowMillis.
+    private long roll(long state, long nowMillis) {
+        long start = alignedStart(nowMillis);
+        long stateStart = state >>> 32;
+        if (stateStart == start) {
+            return state;
+        }
+        if (stateStart + windowSeconds == start) {
+            return packedStart(start) | (currentCount(state) << COUNT_BITS);
+        }
+        if (stateStart > start) {
+            // Clock went backwards; keep the newer window.
+            return state;
+        }
+        return packedStart(start);
+    }
+
+    private double estimate(long state, long nowMillis) {
+        double elapsed = (double) (nowMillis - windowStartMillis(state)) / windowMillis;
+        return previousCount(state) * Math.min(1, Math.max(0, 1 - elapsed)) + currentCount(state);
+    }
+
+    private long alignedStart(long nowMillis) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(nowMillis);
+        return seconds - seconds % windowSeconds;
+    }
+
+    private static long packedStart(long startSeconds) {
+        return startSeconds << 32;
+    }
+
+    private static long windowStartMillis(long state) {
+        return TimeUnit.SECONDS.toMillis(state >>> 32);
+    }
+
+    private static long previousCount(long state) {
+        return (state >>> COUNT_BITS) & COUNT_MASK;
+    }
+
+    private static long currentCount(long state) {
+        return state & COUNT_MASK;
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.poelsk.authreloaded.auth;
+
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sliding-window attempt counter per key. Each key's state is one packed long (see SlidingWindow),
+// updated with a compare-and-set, so concurrent attempts never block.
+//
+// A key gets one expiry task on the timing wheel when it is first counted. The task removes the key
+// once its attempts have slid out of the window, or schedules itself again for when they will have.
+public class SlidingWindowLimiter<K> {
+
+    // Set on a state that was taken out of the map, so a racing update retries on a fresh one.
+    private static final long REMOVED = -1L;
+
+    public interface KeyWriter<K> {
+        void write(RateLimitSnapshot.Output out, K key) throws IOException;
+    }
+
+    public interface KeyReader<K> {
+        K read(RateLimitSnapshot.Input in) throws IOException;
+    }
+
+    private final Map<K, AtomicLong> states = new ConcurrentHashMap<>();
+    private final SlidingWindow window;
+    private final TimingWheel timingWheel;
+
+    public SlidingWindowLimiter(int maxAttempts, long window, TimeUnit unit, TimingWheel timingWheel) {
+        this.window = new SlidingWindow(maxAttempts, window, unit);
+        this.timingWheel = timingWheel;
+    }
+
+    public void recordAttempt(K key) {
+        recordAttempt(key, System.currentTimeMillis());
+    }
+
+    public void recordAttempt(K key, long nowMillis) {
+        AtomicLong state = states.computeIfAbsent(key, k -> new AtomicLong());
+        while (true) {
+            long current = state.get();
+            if (current == REMOVED) {
+                states.remove(key, state);
+                state = states.computeIfAbsent(key, k -> new AtomicLong());
+                continue;
+            }
+            long updated = window.record(current, nowMillis);
+            if (state.compareAndSet(current, updated)) {
+                if (current == 0) {
+                    scheduleExpiry(key, updated, nowMillis);
+                }
+                return;
+            }
+        }
+    }
+
+    public boolean isLimited(K key) {
+        return isLimited(key, System.currentTimeMillis());
+    }
+
+    public boolean isLimited(K key, long nowMillis) {
+        AtomicLong state = states.get(key);
+        return state != null && window.isLimited(load(state), nowMillis);
+    }
+
+    // Seconds until the key is allowed again, rounded up; 0 if it isn't limited.
+    public long getRemainingSeconds(K key) {
+        return getRemainingSeconds(key, System.currentTimeMillis());
+    }
+
+    public long getRemainingSeconds(K key, long nowMillis) {
+        AtomicLong state = states.get(key);
+        return state == null ? 0 : window.remainingSeconds(load(state), nowMillis);
+    }
+
+    // Clears the counts but leaves the key to its expiry task.
+    public void reset(K key) {
+        AtomicLong state = states.get(key);
+        if (state == null) {
+            return;
+        }
+        while (true) {
+            long current = state.get();
+            if (current == REMOVED || current == 0 || state.compareAndSet(current, window.clear(current))) {
+                return;
+            }
+        }
+    }
+
+    // Writes the window length and every key with attempts still in it, ended by a 0 state.
+    public int writeTo(RateLimitSnapshot.Output out, KeyWriter<K> keyWriter, long nowMillis) throws IOException {
+        int written = 0;
+        out.writeLong(window.getWindowSeconds());
+        for (Map.Entry<K, AtomicLong> entry : states.entrySet()) {
+            long state = entry.getValue().get();
+            if (state != REMOVED && state != 0 && !window.isEmpty(state, nowMillis)) {
+                out.writeLong(state);
+                keyWriter.write(out, entry.getKey());
+                written++;
+            }
+        }
+        out.writeLong(0);
+        return written;
+    }
+
+    // Reads what writeTo wrote and restores the keys whose attempts are still in the window. Attempts
+    // counted since startup are added to them, and entries written for another window length are skipped.
+    public int readFrom(RateLimitSnapshot.Input in, KeyReader<K> keyReader, long nowMillis) throws IOException {
+        boolean sameWindow = in.readLong() == window.getWindowSeconds();
+        int restored = 0;
+        while (true) {
+            long state = in.readLong();
+            if (state == 0) {
+                return restored;
+            }
+            K key = keyReader.read(in);
+            if (sameWindow && !window.isEmpty(state, nowMillis)) {
+                restore(key, state, nowMillis);
+                restored++;
+            }
+        }
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public int getMaxAttempts() {
+        return window.getMaxAttempts();
+    }
+
+    public long getWindowSeconds() {
+        return window.getWindowSeconds();
+    }
+
+    private void restore(K key, long restored, long nowMillis) {
+        AtomicLong state = states.computeIfAbsent(key, k -> new AtomicLong());
+        while (true) {
+            long current = state.get();
+            if (current == REMOVED) {
+                states.remove(key, state);
+                state = states.computeIfAbsent(key, k -> new AtomicLong());
+                continue;
+            }
+            long merged = current == 0 ? restored : window.merge(current, restored, nowMillis);
+            if (state.compareAndSet(current, merged)) {
+                // A key that was already counted has its expiry task scheduled.
+                if (current == 0) {
+                    scheduleExpiry(key, merged, nowMillis);
+                }
+                return;
+            }
+        }
+    }
+
+    private void scheduleExpiry(K key, long state, long nowMillis) {
+        timingWheel.schedule(() -> expire(key), window.expiresAtMillis(state) - nowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire(K key) {
+        AtomicLong state = states.get(key);
+        if (state == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        while (true) {
+            long current = state.get();
+            if (current == REMOVED) {
+                return;
+            }
+            if (!window.isEmpty(current, now)) {
+                scheduleExpiry(key, current, now);
+                return;
+            }
+            if (state.compareAndSet(current, REMOVED)) {
+                states.remove(key, state);
+                return;
+            }
+        }
+    }
+
+    private static long load(AtomicLong state) {
+        long current = state.get();
+        return current == REMOVED ? 0 : current;
+    }
+}
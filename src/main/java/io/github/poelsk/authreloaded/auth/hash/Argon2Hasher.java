@@ -0,0 +1,171 @@
+package io.github.poelsk.authreloaded.auth.hash;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// PHC string format: $argon2id$v=19$m=<KiB>,t=<iterations>,p=<parallelism>$<salt>$<hash>
+public class Argon2Hasher implements PasswordHasher {
+
+    private static final String PREFIX = "$argon2id$";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    // Parameters are read from the stored hash, so a crafted or imported one could otherwise make a
+    // single verification allocate gigabytes or run for minutes. Hashes beyond these never verify.
+    private static final int MAX_MEMORY_KIB = 262_144;
+    private static final int MAX_ITERATIONS = 16;
+    private static final int MAX_PARALLELISM = 16;
+    private static final int MAX_SALT_LENGTH = 64;
+    private static final int MAX_HASH_LENGTH = 64;
+    // Argon2 needs at least 8 KiB of memory per lane and a 4-byte output; BouncyCastle throws otherwise.
+    private static final int MIN_MEMORY_KIB_PER_LANE = 8;
+    private static final int MIN_HASH_LENGTH = 4;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int memoryKib;
+    private final int iterations;
+    private final int parallelism;
+
+    public Argon2Hasher(int memoryKib, int iterations, int parallelism) {
+        this.parallelism = Math.max(1, Math.min(MAX_PARALLELISM, parallelism));
+        this.memoryKib = Math.max(MIN_MEMORY_KIB_PER_LANE * this.parallelism, Math.min(MAX_MEMORY_KIB, memoryKib));
+        this.iterations = Math.max(1, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    @Override
+    public String getName() {
+        return "argon2id";
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return hashedPassword != null && hashedPassword.startsWith(PREFIX);
+    }
+
+    @Override
+    public String hash(String plaintextPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = derive(plaintextPassword, salt, memoryKib, iterations, parallelism, HASH_LENGTH);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "v=19$" + parameterString() + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    @Override
+    public boolean verify(String plaintextPassword, String hashedPassword) {
+        Stored stored = parse(hashedPassword);
+        if (stored == null) {
+            return false;
+        }
+        byte[] actual = derive(plaintextPassword, stored.salt, stored.memoryKib, stored.iterations, stored.parallelism,
+                stored.hash.length);
+        return MessageDigest.isEqual(stored.hash, actual);
+    }
+
+    @Override
+    public boolean accepts(String hashedPassword) {
+        return parse(hashedPassword) != null;
+    }
+
+    @Override
+    public boolean needsRehash(String hashedPassword) {
+        String[] parts = split(hashedPassword);
+        return parts != null && !parts[1].equals(parameterString());
+    }
+
+    private String parameterString() {
+        return "m=" + memoryKib + ",t=" + iterations + ",p=" + parallelism;
+    }
+
+    // Null if the hash is malformed or its parameters are out of bounds.
+    private Stored parse(String hashedPassword) {
+        String[] parts = split(hashedPassword);
+        if (parts == null || !"v=19".equals(parts[0])) {
+            return null;
+        }
+        try {
+            int storedMemory = 0;
+            int storedIterations = 0;
+            int storedParallelism = 0;
+            for (String parameter : parts[1].split(",")) {
+                String[] pair = parameter.split("=", 2);
+                if (pair.length != 2) {
+                    return null;
+                }
+                int value = Integer.parseInt(pair[1]);
+                switch (pair[0]) {
+                    case "m":
+                        storedMemory = value;
+                        break;
+                    case "t":
+                        storedIterations = value;
+                        break;
+                    case "p":
+                        storedParallelism = value;
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            if (storedParallelism < 1 || storedParallelism > MAX_PARALLELISM
+                    || storedMemory < MIN_MEMORY_KIB_PER_LANE * storedParallelism || storedMemory > MAX_MEMORY_KIB
+                    || storedIterations < 1 || storedIterations > MAX_ITERATIONS) {
+                return null;
+            }
+
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] hash = Base64.getDecoder().decode(parts[3]);
+            if (salt.length > MAX_SALT_LENGTH || hash.length < MIN_HASH_LENGTH || hash.length > MAX_HASH_LENGTH) {
+                return null;
+            }
+            return new Stored(storedMemory, storedIterations, storedParallelism, salt, hash);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String[] split(String hashedPassword) {
+        if (!supports(hashedPassword)) {
+            return null;
+        }
+        String[] parts = hashedPassword.substring(PREFIX.length()).split("\\$");
+        return parts.length == 4 ? parts : null;
+    }
+
+    private static final class Stored {
+        final int memoryKib;
+        final int iterations;
+        final int parallelism;
+        final byte[] salt;
+        final byte[] hash;
+
+        Stored(int memoryKib, int iterations, int parallelism, byte[] salt, byte[] hash) {
+            this.memoryKib = memoryKib;
+            this.iterations = iterations;
+            this.parallelism = parallelism;
+            this.salt = salt;
+            this.hash = hash;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int memoryKib, int iterations, int parallelism, int length) {
+        Argon2Parameters parameters = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                .withMemoryAsKB(memoryKib)
+                .withIterations(iterations)
+                .withParallelism(parallelism)
+                .withSalt(salt)
+                .build();
+
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(parameters);
+        byte[] hash = new byte[length];
+        generator.generateBytes(password.getBytes(StandardCharsets.UTF_8), hash);
+        return hash;
+    }
+}
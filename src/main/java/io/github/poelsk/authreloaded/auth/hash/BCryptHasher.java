@@ -0,0 +1,100 @@
+package io.github.poelsk.authreloaded.auth.hash;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+public class BCryptHasher implements PasswordHasher {
+
+    private static final int MIN_COST = 4;
+    private static final int MAX_COST = 31;
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private volatile int cost;
+
+    public BCryptHasher(int cost) {
+        this.cost = clampCost(cost);
+    }
+
+    @Override
+    public String getName() {
+        return "bcrypt";
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return hashedPassword != null && hashedPassword.length() == 60
+                && (hashedPassword.startsWith("$2a$") || hashedPassword.startsWith("$2b$") || hashedPassword.startsWith("$2y$"));
+    }
+
+    @Override
+    public String hash(String plaintextPassword) {
+        return BCrypt.hashpw(plaintextPassword, BCrypt.gensalt(cost));
+    }
+
+    @Override
+    public boolean verify(String plaintextPassword, String hashedPassword) {
+        if (!supports(hashedPassword)) {
+            return false;
+        }
+        try {
+            // $2b$ and $2y$ only differ from $2a$ in how other implementations handled long or 8-bit
+            // passwords; jBCrypt computes them the same way but only accepts the $2a$ marker.
+            return BCrypt.checkpw(plaintextPassword, "$2a$" + hashedPassword.substring(4));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String hashedPassword) {
+        int storedCost = getCost(hashedPassword);
+        return storedCost != -1 && storedCost != cost;
+    }
+
+    // Returns the highest cost in [minCost, maxCost] whose verification time stays within targetMillis.
+    public int calibrate(long targetMillis, int minCost, int maxCost) {
+        int low = clampCost(Math.min(minCost, maxCost));
+        int high = clampCost(Math.max(minCost, maxCost));
+
+        // Warm up the JIT so the first measurement isn't inflated.
+        BCrypt.hashpw(CALIBRATION_PASSWORD, BCrypt.gensalt(MIN_COST));
+
+        int selected = low;
+        for (int candidate = low; candidate <= high; candidate++) {
+            String hash = BCrypt.hashpw(CALIBRATION_PASSWORD, BCrypt.gensalt(candidate));
+            long start = System.nanoTime();
+            BCrypt.checkpw(CALIBRATION_PASSWORD, hash);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+
+            if (elapsedMillis > targetMillis) {
+                break;
+            }
+            selected = candidate;
+            // Every extra cost step doubles the work, so stop once the next one would overshoot.
+            if (elapsedMillis * 2 > targetMillis) {
+                break;
+            }
+        }
+
+        this.cost = selected;
+        return selected;
+    }
+
+    private int getCost(String hashedPassword) {
+        if (!supports(hashedPassword) || hashedPassword.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int clampCost(int cost) {
+        return Math.max(MIN_COST, Math.min(MAX_COST, cost));
+    }
+
+    public int getCost() {
+        return cost;
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.poelsk.authreloaded.auth.hash;
+
+public interface PasswordHasher {
+
+    String getName();
+
+    // Whether this hasher understands the stored hash, judged by its prefix.
+    boolean supports(String hashedPassword);
+
+    String hash(String plaintextPassword);
+
+    boolean verify(String plaintextPassword, String hashedPassword);
+
+    // Whether verify() would try the stored hash at all: it is well-formed and its parameters are
+    // within the limits this hasher accepts. Used to reject imported hashes up front.
+    default boolean accepts(String hashedPassword) {
+        return supports(hashedPassword);
+    }
+
+    // Whether a hash this hasher supports was created with different parameters than the current ones.
+    default boolean needsRehash(String hashedPassword) {
+        return false;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.poelsk.authreloaded.auth.hash;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Format: $pbkdf2-sha256$<iterations>$<base64 salt>$<base64 hash>
+public class Pbkdf2Hasher implements PasswordHasher {
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    // The iteration count and key length come from the stored hash, so a crafted or imported one could
+    // otherwise tie up a hashing thread for minutes. Hashes beyond these never verify.
+    private static final int MAX_ITERATIONS = 10_000_000;
+    private static final int MAX_SALT_LENGTH = 64;
+    private static final int MAX_HASH_LENGTH = 64;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+
+    public Pbkdf2Hasher(int iterations) {
+        this.iterations = Math.max(1000, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    @Override
+    public String getName() {
+        return "pbkdf2";
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return hashedPassword != null && hashedPassword.startsWith(PREFIX);
+    }
+
+    @Override
+    public String hash(String plaintextPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = derive(plaintextPassword, salt, iterations, HASH_LENGTH);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    @Override
+    public boolean verify(String plaintextPassword, String hashedPassword) {
+        String[] parts = split(hashedPassword);
+        if (parts == null) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (!withinLimits(storedIterations, salt, expected)) {
+                return false;
+            }
+            return MessageDigest.isEqual(expected, derive(plaintextPassword, salt, storedIterations, expected.length));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean accepts(String hashedPassword) {
+        String[] parts = split(hashedPassword);
+        if (parts == null) {
+            return false;
+        }
+        try {
+            return withinLimits(Integer.parseInt(parts[0]), Base64.getDecoder().decode(parts[1]),
+                    Base64.getDecoder().decode(parts[2]));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean withinLimits(int iterations, byte[] salt, byte[] hash) {
+        return iterations >= 1 && iterations <= MAX_ITERATIONS
+                && salt.length > 0 && salt.length <= MAX_SALT_LENGTH
+                && hash.length > 0 && hash.length <= MAX_HASH_LENGTH;
+    }
+
+    @Override
+    public boolean needsRehash(String hashedPassword) {
+        String[] parts = split(hashedPassword);
+        return parts != null && !parts[0].equals(String.valueOf(iterations));
+    }
+
+    private String[] split(String hashedPassword) {
+        if (!supports(hashedPassword)) {
+            return null;
+        }
+        String[] parts = hashedPassword.substring(PREFIX.length()).split("\\$");
+        return parts.length == 3 ? parts : null;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.poelsk.authreloaded.auth.hash;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+// Salted SHA-256 as stored by AuthMe: $SHA$<salt>$<sha256(sha256(password) + salt)>.
+// Only kept so imported accounts can log in; those hashes are always upgraded on the next login.
+public class Sha256Hasher implements PasswordHasher {
+
+    private static final String PREFIX = "$SHA$";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public String getName() {
+        return "sha256";
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return hashedPassword != null && hashedPassword.startsWith(PREFIX);
+    }
+
+    @Override
+    public String hash(String plaintextPassword) {
+        byte[] saltBytes = new byte[8];
+        random.nextBytes(saltBytes);
+        String salt = toHex(saltBytes);
+        return PREFIX + salt + "$" + digest(salt, plaintextPassword);
+    }
+
+    @Override
+    public boolean verify(String plaintextPassword, String hashedPassword) {
+        if (!supports(hashedPassword)) {
+            return false;
+        }
+        String[] parts = hashedPassword.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 2) {
+            return false;
+        }
+        byte[] expected = parts[1].toLowerCase().getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = digest(parts[0], plaintextPassword).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    @Override
+    public boolean needsRehash(String hashedPassword) {
+        return supports(hashedPassword);
+    }
+
+    private static String digest(String salt, String password) {
+        return sha256(sha256(password) + salt);
+    }
+
+    private static String sha256(String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return toHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
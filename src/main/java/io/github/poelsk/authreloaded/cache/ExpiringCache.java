@@ -0,0 +1,111 @@
+package io.github.poelsk.authreloaded.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Size-bounded cache whose entries expire after a fixed time. When full, the least recently used
+// entry is dropped. Expired entries are removed when they are next looked up.
+public class ExpiringCache<K, V> {
+
+    private final int maxSize;
+    private final long defaultTtlNanos;
+    private final Map<K, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ExpiringCache(int maxSize, long ttl, TimeUnit unit) {
+        this.maxSize = Math.max(0, maxSize);
+        this.defaultTtlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && defaultTtlNanos > 0;
+    }
+
+    // Returns the cached value, or null if there is none or it has expired.
+    public V get(K key) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, defaultTtlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void put(K key, V value, long ttl, TimeUnit unit) {
+        long ttlNanos = unit.toNanos(ttl);
+        if (maxSize == 0 || ttlNanos <= 0) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    // True if the key is cached but expires within the given time, so it can be refreshed ahead of expiry.
+    public boolean expiresWithin(K key, long time, TimeUnit unit) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            return entry != null && entry.expiresAt - System.nanoTime() <= unit.toNanos(time);
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.poelsk.authreloaded.cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Hierarchical timing wheel for cheap, coarse expiry tasks. Each level has 64 buckets; a task lands in
+// the lowest level whose span covers its delay and moves down a level each time the wheel below it
+// completes a turn, so scheduling and firing cost O(1) amortized however many tasks are pending.
+//
+// Callers only enqueue; a single thread places tasks into buckets and runs them when they are due,
+// at most one tick late. Tasks must be short, since they all run on that thread.
+public class TimingWheel {
+
+    private static final int BUCKET_BITS = 6;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (BUCKET_BITS * LEVELS)) - 1;
+
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private final Logger logger;
+    private final Queue<Task> incoming = new ConcurrentLinkedQueue<>();
+    private final Task[][] buckets = new Task[LEVELS][BUCKETS];
+    private final Thread worker;
+    private volatile boolean running = true;
+    // Only touched by the worker thread.
+    private long currentTick;
+
+    public TimingWheel(String name, long tick, TimeUnit unit, Logger logger) {
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        this.logger = logger;
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Runs the task once the delay has passed. There is no cancel; a task that is no longer wanted
+    // should notice that when it runs and do nothing.
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        incoming.add(new Task(task, (deadline + tickNanos - 1) / tickNanos));
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long wait = startNanos + (currentTick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+            drainIncoming();
+            while (currentTick < targetTick && running) {
+                currentTick++;
+                advance();
+            }
+        }
+    }
+
+    private void drainIncoming() {
+        Task task;
+        while ((task = incoming.poll()) != null) {
+            place(task);
+        }
+    }
+
+    // Moves the buckets of every level whose turn just completed down, then runs the tasks due now.
+    private void advance() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (BUCKET_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int index = (int) (currentTick >>> (BUCKET_BITS * level)) & BUCKET_MASK;
+            Task task = buckets[level][index];
+            buckets[level][index] = null;
+            while (task != null) {
+                Task next = task.next;
+                place(task);
+                task = next;
+            }
+        }
+
+        int index = (int) currentTick & BUCKET_MASK;
+        Task task = buckets[0][index];
+        buckets[0][index] = null;
+        while (task != null) {
+            Task next = task.next;
+            if (task.deadlineTick <= currentTick) {
+                runTask(task);
+            } else {
+                place(task);
+            }
+            task = next;
+        }
+    }
+
+    private void place(Task task) {
+        long delay = task.deadlineTick - currentTick;
+        if (delay <= 0) {
+            runTask(task);
+            return;
+        }
+
+        // Tasks beyond the top level's span sit at its far end and get placed again when it turns.
+        long target = currentTick + Math.min(delay, MAX_DELAY_TICKS);
+        int level = 0;
+        while (level < LEVELS - 1 && (target - currentTick) >= (1L << (BUCKET_BITS * (level + 1)))) {
+            level++;
+        }
+        int index = (int) (target >>> (BUCKET_BITS * level)) & BUCKET_MASK;
+        task.next = buckets[level][index];
+        buckets[level][index] = task;
+    }
+
+    private void runTask(Task task) {
+        task.next = null;
+        try {
+            task.action.run();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Timed task failed", e);
+        }
+    }
+
+    private static final class Task {
+        private final Runnable action;
+        private final long deadlineTick;
+        private Task next;
+
+        private Task(Runnable action, long deadlineTick) {
+            this.action = action;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
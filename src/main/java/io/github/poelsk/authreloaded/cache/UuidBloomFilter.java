@@ -0,0 +1,76 @@
+package io.github.poelsk.authreloaded.cache;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Probabilistic set of UUIDs: mightContain() never misses an added UUID, but may report one that was
+// never added at roughly the configured false positive rate. Safe for concurrent adds and lookups.
+public class UuidBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private final LongAdder added = new LongAdder();
+
+    public UuidBloomFilter(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        double rate = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+
+        long bits = (long) Math.ceil(-entries * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+        this.capacity = entries;
+    }
+
+    public void add(UUID uuid) {
+        long h1 = mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+        long h2 = mix(uuid.getLeastSignificantBits() + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        added.increment();
+    }
+
+    public boolean mightContain(UUID uuid) {
+        long h1 = mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+        long h2 = mix(uuid.getLeastSignificantBits() + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Past its capacity the filter still never misses, it just answers "maybe" more often.
+    public boolean isOverCapacity() {
+        return added.sum() > capacity;
+    }
+
+    public long getSizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    // MurmurHash3's 64-bit finalizer.
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93fe53e1a85L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -25,10 +25,43 @@ public class AdminCommand implements CommandExecutor {
             plugin.reloadConfig();
             plugin.getMessageManager().loadMessages();
             plugin.getMessageManager().sendMessage(sender, "config_reloaded");
+        } else if (args.length > 0 && "import".equalsIgnoreCase(args[0])) {
+            handleImport(sender, args);
+        } else if (args.length > 0 && "lockdown".equalsIgnoreCase(args[0])) {
+            handleLockdown(sender, args);
         } else {
             plugin.getMessageManager().sendMessage(sender, "admin_usage");
         }
 
         return true;
     }
+
+    private void handleImport(CommandSender sender, String[] args) {
+        if (args.length != 2) {
+            plugin.getMessageManager().sendMessage(sender, "import_usage");
+            return;
+        }
+
+        String source = args[1];
+        if (!plugin.getAccountImporter().hasSource(source)) {
+            plugin.getMessageManager().sendMessage(sender, "import_unknown_source", source);
+            return;
+        }
+
+        if (!plugin.getAccountImporter().startImport(sender, source)) {
+            plugin.getMessageManager().sendMessage(sender, "import_already_running");
+        }
+    }
+
+    private void handleLockdown(CommandSender sender, String[] args) {
+        if (args.length != 2 || !("on".equalsIgnoreCase(args[1]) || "off".equalsIgnoreCase(args[1]))) {
+            plugin.getMessageManager().sendMessage(sender, "lockdown_usage");
+            return;
+        }
+
+        boolean enable = "on".equalsIgnoreCase(args[1]);
+        plugin.getLockdownManager().setEnabled(enable);
+        plugin.getMessageManager().sendMessage(sender, enable ? "lockdown_enabled" : "lockdown_disabled");
+        plugin.getLogger().info(sender.getName() + " turned lockdown mode " + (enable ? "on" : "off") + ".");
+    }
 }
\ No newline at end of file
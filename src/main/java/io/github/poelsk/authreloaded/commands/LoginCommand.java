@@ -33,12 +33,12 @@ public class LoginCommand implements CommandExecutor {
 
         String password = args[0];
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            AuthenticationService.AuthResult result = plugin.getAuthenticationService().loginPlayer(player, password);
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                plugin.getAuthenticationService().handleAuthResult(player, result, "login");
-            });
-        });
+        AuthenticationService authenticationService = plugin.getAuthenticationService();
+        authenticationService.loginAsync(player, password).thenAcceptAsync(result -> {
+            if (player.isOnline()) {
+                authenticationService.handleAuthResult(player, result, "login");
+            }
+        }, Bukkit.getScheduler().getMainThreadExecutor(plugin));
 
         return true;
     }
@@ -38,12 +38,12 @@ public class RegisterCommand implements CommandExecutor {
 
         String password = args[0];
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            AuthenticationService.AuthResult result = plugin.getAuthenticationService().registerPlayer(player, password);
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                plugin.getAuthenticationService().handleAuthResult(player, result, "register");
-            });
-        });
+        AuthenticationService authenticationService = plugin.getAuthenticationService();
+        authenticationService.registerAsync(player, password).thenAcceptAsync(result -> {
+            if (player.isOnline()) {
+                authenticationService.handleAuthResult(player, result, "register");
+            }
+        }, Bukkit.getScheduler().getMainThreadExecutor(plugin));
 
         return true;
     }
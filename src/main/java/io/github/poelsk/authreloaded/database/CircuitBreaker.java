@@ -0,0 +1,116 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Tracks the outcome of the last database calls. Once too many of them failed or were slow, the breaker
+// opens and calls fail right away instead of each waiting for a connection. After the open period a
+// single caller gets to probe the database; the breaker closes again if the probe succeeds.
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAt;
+    private int position;
+    private int recorded;
+    private int failures;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long slowCallMillis, long openMillis) {
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, outcomes.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    // True if calls may go to the database.
+    public boolean allowRequest() {
+        return state.get() == State.CLOSED;
+    }
+
+    // Once the open period is over, lets exactly one caller run the probe.
+    public boolean tryStartProbe() {
+        return state.get() == State.OPEN && System.nanoTime() - openedAt >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    public void probeSucceeded() {
+        synchronized (outcomes) {
+            resetWindow();
+        }
+        state.set(State.CLOSED);
+    }
+
+    public void probeFailed() {
+        openedAt = System.nanoTime();
+        state.set(State.OPEN);
+    }
+
+    // Both return true if this call opened the breaker.
+    public boolean recordSuccess(long elapsedNanos) {
+        return record(slowCallNanos > 0 && elapsedNanos > slowCallNanos);
+    }
+
+    public boolean recordFailure() {
+        return record(true);
+    }
+
+    private boolean record(boolean failed) {
+        boolean trip;
+        synchronized (outcomes) {
+            if (recorded == outcomes.length && outcomes[position]) {
+                failures--;
+            }
+            outcomes[position] = failed;
+            if (failed) {
+                failures++;
+            }
+            position = (position + 1) % outcomes.length;
+            recorded = Math.min(recorded + 1, outcomes.length);
+            trip = recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold;
+            if (trip) {
+                resetWindow();
+            }
+        }
+
+        if (trip && state.get() == State.CLOSED) {
+            // Set before the state changes so a concurrent probe never sees an old timestamp.
+            openedAt = System.nanoTime();
+            return state.compareAndSet(State.CLOSED, State.OPEN);
+        }
+        return false;
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    // Only errors that point at an unreachable or overloaded server count; a constraint violation doesn't.
+    public static boolean isBackendFailure(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLTransientException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException
+                || (sqlState != null && sqlState.startsWith("08"));
+    }
+}
@@ -2,20 +2,96 @@ package io.github.poelsk.authreloaded.database;
 
 import com.zaxxer.hikari.HikariDataSource;
 import io.github.poelsk.authreloaded.AuthReloaded;
+import io.github.poelsk.authreloaded.database.dialect.SQLiteDialect;
+import io.github.poelsk.authreloaded.database.dialect.SqlDialect;
+import io.github.poelsk.authreloaded.database.migration.SchemaMigrator;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
 
 public class DatabaseManager {
 
     private final AuthReloaded plugin;
+    private final Logger logger;
     private HikariDataSource dataSource;
+    // Read replicas, used round-robin. Empty when reads go to dataSource as well.
+    private List<HikariDataSource> readerSources = Collections.emptyList();
+    private final AtomicInteger nextReader = new AtomicInteger();
+    // Players written recently, whose reads stay on the primary until replication has caught up.
+    private final Map<UUID, Long> recentWrites = new ConcurrentHashMap<>();
+    private long readYourWritesNanos;
     private IDataSource dataSourceProvider;
+    private SqlDialect dialect;
+    private SQLiteEngine sqliteEngine;
+    // Player data split across SQLite files by UUID hash. Just this manager unless sharding is enabled.
+    private List<DatabaseManager> shards = List.of(this);
+    private ThreadPoolExecutor executor;
+    // Null when disabled, e.g. for databases wrapped by benchmarks and tooling.
+    private CircuitBreaker circuitBreaker;
+    private int probeTimeoutSeconds = 5;
 
     public DatabaseManager(AuthReloaded plugin) {
         this.plugin = plugin;
+        this.logger = plugin.getLogger();
+    }
+
+    // Wraps a SQLite engine built outside the plugin (benchmarks, tooling). Tables are created right away.
+    public DatabaseManager(SQLiteEngine sqliteEngine) {
+        this.plugin = null;
+        this.logger = Logger.getLogger("AuthReloaded");
+        this.sqliteEngine = sqliteEngine;
+        this.dialect = new SQLiteDialect();
+        this.executor = createExecutor(sqliteEngine.getReaderCount() + 1);
+        createTables();
+    }
+
+    // An additional SQLite shard, sharing the first shard's executor. It gets the circuit breaker once all shards are open.
+    private DatabaseManager(SQLiteEngine sqliteEngine, ThreadPoolExecutor executor, Logger logger) {
+        this.plugin = null;
+        this.logger = logger;
+        this.sqliteEngine = sqliteEngine;
+        this.dialect = new SQLiteDialect();
+        this.executor = executor;
+        createTables();
+    }
+
+    // Wraps a pool built outside the plugin (benchmarks, tooling). Tables are created right away.
+    public DatabaseManager(HikariDataSource dataSource, String databaseType) {
+        this(dataSource, Collections.emptyList(), databaseType, 0);
+    }
+
+    // Same as above, with reads spread across the given replicas. The primary keeps answering reads for
+    // a player for readYourWritesMillis after a write for them.
+    public DatabaseManager(HikariDataSource dataSource, List<HikariDataSource> readerSources, String databaseType,
+                           long readYourWritesMillis) {
+        this.plugin = null;
+        this.logger = Logger.getLogger("AuthReloaded");
+        this.dataSource = dataSource;
+        this.readerSources = List.copyOf(readerSources);
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        this.dialect = SqlDialect.forType(databaseType);
+        this.executor = createExecutor(totalPoolSize());
+        createTables();
     }
 
     public void initializeDatabase() {
@@ -31,66 +107,329 @@ public class DatabaseManager {
                 break;
             case "sqlite":
             default:
-                dataSourceProvider = new SQLiteDataSource(plugin);
+                dbType = "sqlite";
                 break;
         }
+        this.dialect = SqlDialect.forType(dbType);
 
-        this.dataSource = dataSourceProvider.getDataSource();
-        createTables();
+        // Attached only once the schema is migrated: a long migration step must not trip the breaker
+        // and leave the rest of the migration failing fast.
+        CircuitBreaker breaker = null;
+        if (config.getBoolean("database.circuit-breaker.enabled", true)) {
+            breaker = new CircuitBreaker(
+                    config.getInt("database.circuit-breaker.window-size", 20),
+                    config.getInt("database.circuit-breaker.minimum-calls", 10),
+                    config.getDouble("database.circuit-breaker.failure-rate-threshold", 0.5),
+                    config.getLong("database.circuit-breaker.slow-call-ms", 2000),
+                    config.getLong("database.circuit-breaker.open-ms", 10000));
+            this.probeTimeoutSeconds = Math.max(1, config.getInt("database.circuit-breaker.probe-timeout-seconds", 5));
+        }
+
+        if ("sqlite".equals(dbType)) {
+            SQLiteDataSource source = new SQLiteDataSource(plugin);
+            int shardCount = Math.max(1, config.getInt("database.sqlite.shards", 1));
+            // Readers run in parallel; writes queue up on each shard's own writer thread.
+            this.sqliteEngine = source.createEngine(0);
+            this.executor = createExecutor(shardCount * (sqliteEngine.getReaderCount() + 1));
+            createTables();
+            openShards(source, shardCount);
+            for (DatabaseManager shard : shards) {
+                shard.circuitBreaker = breaker;
+            }
+        } else {
+            this.dataSource = dataSourceProvider.getDataSource();
+            this.readerSources = dataSourceProvider.getReplicaDataSources();
+            this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("database.mysql.read-your-writes-ms", 2000));
+            if (!readerSources.isEmpty()) {
+                logger.info("Reads are spread across " + readerSources.size() + " replica(s).");
+            }
+            this.executor = createExecutor(totalPoolSize());
+            createTables();
+            this.circuitBreaker = breaker;
+        }
+    }
+
+    // Opens the remaining shard files. If the shard count changed since the last start, rows are moved to
+    // their new shard first; this also splits an existing single-file database.
+    private void openShards(SQLiteDataSource source, int shardCount) {
+        try {
+            int previous = SQLiteResharder.readShardCount(this);
+            List<DatabaseManager> opened = new ArrayList<>();
+            opened.add(this);
+            for (int i = 1; i < Math.max(previous, shardCount); i++) {
+                opened.add(new DatabaseManager(source.createEngine(i), executor, logger));
+            }
+
+            if (previous != shardCount) {
+                logger.info("SQLite shard count changed from " + previous + " to " + shardCount + ", moving player data...");
+                new SQLiteResharder(opened, shardCount, 1000, logger).reshard();
+            }
+
+            // Files past the new shard count were emptied above and aren't used anymore.
+            for (DatabaseManager unused : opened.subList(shardCount, opened.size())) {
+                unused.sqliteEngine.close();
+            }
+            this.shards = List.copyOf(opened.subList(0, shardCount));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not open SQLite shards", e);
+        }
     }
 
     private void createTables() {
-        String dbType = plugin.getConfig().getString("database.type", "sqlite").toLowerCase();
-        String sql;
+        try {
+            new SchemaMigrator(this, logger).migrate();
+        } catch (SQLException e) {
+            // Running on a half-migrated schema would fail later in less obvious ways, so the plugin doesn't start.
+            throw new IllegalStateException("Could not migrate the database schema: " + e.getMessage(), e);
+        }
+    }
 
-        switch (dbType) {
-            case "sqlite":
-                sql = "CREATE TABLE IF NOT EXISTS auth_players (" +
-                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "uuid TEXT(36) NOT NULL UNIQUE, " +
-                        "username TEXT(16) NOT NULL, " +
-                        "password_hash TEXT(60) NOT NULL, " +
-                        "last_login_ip TEXT(45), " +
-                        "registration_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                        ");";
-                break;
-            case "mysql":
-                sql = "CREATE TABLE IF NOT EXISTS auth_players (" +
-                        "id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
-                        "uuid VARCHAR(36) NOT NULL UNIQUE, " +
-                        "username VARCHAR(16) NOT NULL, " +
-                        "password_hash VARCHAR(60) NOT NULL, " +
-                        "last_login_ip VARCHAR(45), " +
-                        "registration_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                        ");";
-                break;
-            case "h2":
-                sql = "CREATE TABLE IF NOT EXISTS auth_players (" +
-                        "id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
-                        "uuid VARCHAR(36) NOT NULL UNIQUE, " +
-                        "username VARCHAR(16) NOT NULL, " +
-                        "password_hash VARCHAR(60) NOT NULL, " +
-                        "last_login_ip VARCHAR(45), " +
-                        "registration_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                        ");";
-                break;
-            default:
-                throw new IllegalStateException("Unsupported database type: " + dbType);
+    private int totalPoolSize() {
+        int size = dataSource.getMaximumPoolSize();
+        for (HikariDataSource reader : readerSources) {
+            size += reader.getMaximumPoolSize();
+        }
+        return size;
+    }
+
+    // One thread per pooled connection, so queued queries wait here instead of inside the pool.
+    private ThreadPoolExecutor createExecutor(int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1024), r -> {
+            Thread t = new Thread(r, "AuthReloaded-DB-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public SqlDialect getDialect() {
+        return dialect;
+    }
+
+    public static int shardIndex(UUID key, int shardCount) {
+        return Math.floorMod(key.hashCode(), shardCount);
+    }
+
+    // The shard holding the player's rows; this manager unless sharding is enabled.
+    public DatabaseManager shardFor(UUID key) {
+        return shards.size() == 1 ? this : shards.get(shardIndex(key, shards.size()));
+    }
+
+    public List<DatabaseManager> getShards() {
+        return shards;
+    }
+
+    public <V> Map<DatabaseManager, List<V>> groupByShard(Collection<V> items, Function<V, UUID> key) {
+        Map<DatabaseManager, List<V>> groups = new LinkedHashMap<>();
+        for (V item : items) {
+            groups.computeIfAbsent(shardFor(key.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Reads go to a replica when there are any. Use the keyed variants for data that may have just been written.
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        return guarded(() -> {
+            if (sqliteEngine != null) {
+                return sqliteEngine.read(work);
+            }
+            return runPooled(nextReaderSource(), work);
+        });
+    }
+
+    public <T> T read(UUID key, SqlWork<T> work) throws SQLException {
+        return read(Collections.singleton(key), work);
+    }
+
+    // Goes to the primary if any of the keys was written within the read-your-writes window.
+    public <T> T read(Collection<UUID> keys, SqlWork<T> work) throws SQLException {
+        if (readerSources.isEmpty() || !anyWrittenRecently(keys)) {
+            return read(work);
+        }
+        return guarded(() -> runPooled(dataSource, work));
+    }
+
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        return guarded(() -> {
+            if (sqliteEngine != null) {
+                return sqliteEngine.write(work);
+            }
+            return runPooled(dataSource, work);
+        });
+    }
+
+    // Called after a write for the player, so their next reads see it even if the replicas lag behind.
+    public void markWritten(UUID key) {
+        if (readerSources.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        recentWrites.put(key, now + readYourWritesNanos);
+        if (recentWrites.size() > 1024) {
+            recentWrites.values().removeIf(deadline -> deadline - now <= 0);
+        }
+    }
+
+    private boolean anyWrittenRecently(Collection<UUID> keys) {
+        long now = System.nanoTime();
+        for (UUID key : keys) {
+            Long deadline = recentWrites.get(key);
+            if (deadline == null) {
+                continue;
+            }
+            if (deadline - now > 0) {
+                return true;
+            }
+            recentWrites.remove(key, deadline);
+        }
+        return false;
+    }
+
+    private HikariDataSource nextReaderSource() {
+        if (readerSources.isEmpty()) {
+            return dataSource;
+        }
+        return readerSources.get(Math.floorMod(nextReader.getAndIncrement(), readerSources.size()));
+    }
+
+    private <T> T guarded(SqlCall<T> call) throws SQLException {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            return call.call();
         }
 
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+        if (!breaker.allowRequest()) {
+            if (!breaker.tryStartProbe()) {
+                throw new DatabaseUnavailableException("Database unavailable, circuit breaker is open");
+            }
+            probe(breaker);
+        }
+
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.call();
         } catch (SQLException e) {
-            plugin.getLogger().severe("Could not create database tables!");
-            e.printStackTrace();
+            if (CircuitBreaker.isBackendFailure(e) && breaker.recordFailure()) {
+                logger.warning("Database calls are failing, circuit breaker opened: " + e.getMessage());
+            }
+            throw e;
+        }
+        if (breaker.recordSuccess(System.nanoTime() - start)) {
+            logger.warning("Database calls are too slow, circuit breaker opened.");
         }
+        return result;
     }
 
-    public Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+    // Runs a trivial query with a short timeout; the breaker closes only if it answers. The query timeout
+    // only starts once a connection is handed out, and a dead host holds that up for the pool's whole
+    // connection timeout, so the probe runs on its own thread and is given up on after the same time.
+    // Not on the executor: the callers waiting on the probe may be holding every one of its threads.
+    private void probe(CircuitBreaker breaker) throws SQLException {
+        SqlWork<Void> ping = session -> {
+            try (Statement stmt = session.getConnection().createStatement()) {
+                stmt.setQueryTimeout(probeTimeoutSeconds);
+                stmt.execute("SELECT 1");
+            }
+            return null;
+        };
+        FutureTask<Void> task = new FutureTask<>(() -> sqliteEngine != null ? sqliteEngine.read(ping) : runPooled(dataSource, ping));
+        Thread thread = new Thread(task, "AuthReloaded-DB-Probe");
+        thread.setDaemon(true);
+        thread.start();
+
+        try {
+            task.get(probeTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            breaker.probeFailed();
+            throw new DatabaseUnavailableException("Database probe failed", e.getCause());
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            breaker.probeFailed();
+            throw new DatabaseUnavailableException("Database probe timed out after " + probeTimeoutSeconds + "s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+            breaker.probeFailed();
+            throw new DatabaseUnavailableException("Interrupted while probing the database", e);
+        }
+        breaker.probeSucceeded();
+        logger.info("Database answered the probe, circuit breaker closed.");
+    }
+
+    // Runs the work as a single transaction on the write path, rolling back if it throws.
+    public <T> T writeTransaction(SqlWork<T> work) throws SQLException {
+        return write(session -> {
+            Connection conn = session.getConnection();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                T result = work.execute(session);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private <T> T runPooled(HikariDataSource source, SqlWork<T> work) throws SQLException {
+        try (Connection conn = source.getConnection()) {
+            SqlSession session = SqlSession.pooled(conn);
+            try {
+                return work.execute(session);
+            } finally {
+                session.release();
+            }
+        }
+    }
+
+    private interface SqlCall<T> {
+        T call() throws SQLException;
     }
 
     public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (DatabaseManager shard : shards) {
+            if (shard != this) {
+                shard.sqliteEngine.close();
+            }
+        }
+
+        if (sqliteEngine != null) {
+            sqliteEngine.close();
+        }
+
+        for (HikariDataSource reader : readerSources) {
+            if (!reader.isClosed()) {
+                reader.close();
+            }
+        }
+
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
         }
@@ -0,0 +1,15 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.sql.SQLException;
+
+// Thrown without touching the database while the circuit breaker is open.
+public class DatabaseUnavailableException extends SQLException {
+
+    public DatabaseUnavailableException(String message) {
+        super(message, "08000");
+    }
+
+    public DatabaseUnavailableException(String message, Throwable cause) {
+        super(message, "08000", cause);
+    }
+}
@@ -2,6 +2,14 @@ package io.github.poelsk.authreloaded.database;
 
 import com.zaxxer.hikari.HikariDataSource;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface IDataSource {
     HikariDataSource getDataSource();
-}
\ No newline at end of file
+
+    // Read-only pools that reads are spread across. Empty when everything goes to getDataSource().
+    default List<HikariDataSource> getReplicaDataSources() {
+        return Collections.emptyList();
+    }
+}
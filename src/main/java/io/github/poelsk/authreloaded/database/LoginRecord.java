@@ -0,0 +1,21 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.sql.Timestamp;
+
+public class LoginRecord {
+    private final String ip;
+    private final Timestamp time;
+
+    public LoginRecord(String ip, Timestamp time) {
+        this.ip = ip;
+        this.time = time;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public Timestamp getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// Collects login bookkeeping per player and writes it in batches, keeping it off the login path.
+// Only the latest login of each player is kept between flushes.
+public class LoginWriteBehindQueue {
+
+    private final PlayerDataDAO playerDataDAO;
+    private final Logger logger;
+    private final int maxBatchSize;
+    private final Map<UUID, LoginRecord> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "AuthReloaded-Login-Writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LoginWriteBehindQueue(PlayerDataDAO playerDataDAO, Logger logger, long flushIntervalMs, int maxBatchSize) {
+        this.playerDataDAO = playerDataDAO;
+        this.logger = logger;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        long interval = Math.max(50, flushIntervalMs);
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordLogin(UUID playerUUID, String ip) {
+        pending.put(playerUUID, new LoginRecord(ip, new Timestamp(System.currentTimeMillis())));
+
+        if (pending.size() >= maxBatchSize && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private synchronized void flush() {
+        while (!pending.isEmpty()) {
+            Map<UUID, LoginRecord> batch = new HashMap<>();
+            Iterator<Map.Entry<UUID, LoginRecord>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                Map.Entry<UUID, LoginRecord> entry = iterator.next();
+                // Only take the entry if no newer login replaced it in the meantime.
+                if (pending.remove(entry.getKey(), entry.getValue())) {
+                    batch.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            try {
+                playerDataDAO.updateLastLogins(batch);
+            } catch (SQLException e) {
+                logger.warning("Could not write " + batch.size() + " login records, retrying later: " + e.getMessage());
+                batch.forEach(pending::putIfAbsent);
+                return;
+            }
+        }
+    }
+
+    // Stops the periodic flush and writes everything that is still queued.
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Gathers lookups that arrive close together and resolves them with one query. A batch is sent once
+// the first key has waited 'windowMillis', or as soon as 'maxBatchSize' keys are waiting. Concurrent
+// lookups of the same key share one future.
+public class LookupBatcher<K, V> {
+
+    @FunctionalInterface
+    public interface BatchLoader<K, V> {
+        // Keys missing from the result complete with null.
+        Map<K, V> load(Set<K> keys) throws Exception;
+    }
+
+    private final BatchLoader<K, V> loader;
+    private final Executor executor;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "AuthReloaded-Lookup-Batcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LookupBatcher(BatchLoader<K, V> loader, Executor executor, long windowMillis, int maxBatchSize) {
+        this.loader = loader;
+        this.executor = executor;
+        this.windowMillis = Math.max(0, windowMillis);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    public CompletableFuture<V> lookup(K key) {
+        synchronized (pending) {
+            CompletableFuture<V> future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatchSize) {
+                scheduler.execute(this::flush);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+            return future;
+        }
+    }
+
+    private void flush() {
+        Map<K, CompletableFuture<V>> batch = new LinkedHashMap<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<K, CompletableFuture<V>>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                Map.Entry<K, CompletableFuture<V>> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            flushScheduled = !pending.isEmpty();
+            if (flushScheduled) {
+                // More than one batch was waiting; send the rest right behind this one.
+                scheduler.execute(this::flush);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> load(batch));
+        } catch (RejectedExecutionException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private void load(Map<K, CompletableFuture<V>> batch) {
+        Map<K, V> results;
+        try {
+            results = loader.load(batch.keySet());
+        } catch (Exception e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+        batch.forEach((key, future) -> future.complete(results.get(key)));
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        synchronized (pending) {
+            pending.values().forEach(future -> future.completeExceptionally(new RejectedExecutionException("Lookup batcher is shut down")));
+            pending.clear();
+        }
+    }
+}
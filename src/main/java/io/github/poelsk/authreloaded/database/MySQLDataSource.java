@@ -5,6 +5,10 @@ import com.zaxxer.hikari.HikariDataSource;
 import io.github.poelsk.authreloaded.AuthReloaded;
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class MySQLDataSource implements IDataSource {
 
     private final AuthReloaded plugin;
@@ -15,12 +19,42 @@ public class MySQLDataSource implements IDataSource {
 
     @Override
     public HikariDataSource getDataSource() {
+        ConfigurationSection dbConfig = plugin.getConfig().getConfigurationSection("database.mysql");
+        HikariConfig config = createConfig(dbConfig.getString("host"), dbConfig.getInt("port"));
+        config.setPoolName("AuthReloaded-Primary");
+        return new HikariDataSource(config);
+    }
+
+    // One read-only pool per entry in database.mysql.replicas; the primary's database and credentials are reused.
+    @Override
+    public List<HikariDataSource> getReplicaDataSources() {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        ConfigurationSection dbConfig = plugin.getConfig().getConfigurationSection("database.mysql");
+        for (Map<?, ?> replica : dbConfig.getMapList("replicas")) {
+            Object host = replica.get("host");
+            Object port = replica.get("port");
+            if (host == null) {
+                plugin.getLogger().warning("Ignoring MySQL replica without a host.");
+                continue;
+            }
+
+            HikariConfig config = createConfig(host.toString(), port == null ? 3306 : Integer.parseInt(port.toString()));
+            config.setPoolName("AuthReloaded-Replica-" + (replicas.size() + 1));
+            config.setReadOnly(true);
+            replicas.add(new HikariDataSource(config));
+        }
+        return replicas;
+    }
+
+    private HikariConfig createConfig(String host, int port) {
         HikariConfig config = new HikariConfig();
         ConfigurationSection dbConfig = plugin.getConfig().getConfigurationSection("database.mysql");
 
-        config.setJdbcUrl("jdbc:mysql://" + dbConfig.getString("host") + ":" + dbConfig.getInt("port") + "/" + dbConfig.getString("database"));
+        config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + dbConfig.getString("database"));
         config.setUsername(dbConfig.getString("username"));
         config.setPassword(dbConfig.getString("password"));
+        // Lets executeBatch send multi-row inserts instead of one round trip per row.
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
 
         ConfigurationSection poolSettings = plugin.getConfig().getConfigurationSection("database.pool-settings");
         if (poolSettings!= null) {
@@ -29,7 +63,6 @@ public class MySQLDataSource implements IDataSource {
             config.setIdleTimeout(poolSettings.getInt("idle-timeout", 600000));
             config.setMaxLifetime(poolSettings.getInt("max-lifetime", 1800000));
         }
-
-        return new HikariDataSource(config);
+        return config;
     }
-}
\ No newline at end of file
+}
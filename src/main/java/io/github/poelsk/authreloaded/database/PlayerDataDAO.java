@@ -1,69 +1,402 @@
 package io.github.poelsk.authreloaded.database;
 
+import io.github.poelsk.authreloaded.cache.ExpiringCache;
+import io.github.poelsk.authreloaded.cache.UuidBloomFilter;
+import io.github.poelsk.authreloaded.database.dialect.SqlDialect;
+import io.github.poelsk.authreloaded.model.AuthProfile;
 import io.github.poelsk.authreloaded.model.PlayerData;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PlayerDataDAO {
 
+    private static final int MAX_INSERT_ATTEMPTS = 5;
+
     private final DatabaseManager dbManager;
+    private final SqlDialect dialect;
+    // Looked-up rows, including "not registered", so pre-login and the following /login or /register share one read.
+    private final ExpiringCache<UUID, Optional<PlayerData>> cache;
+    private final String insertIgnoreSql;
+    private final String createPlayerSql;
+    private final boolean insertIgnoreRepeatsKey;
+    // Registered UUIDs, so pre-login can skip the query for players who are certainly not registered.
+    private volatile UuidBloomFilter registeredFilter;
+    private volatile UuidBloomFilter loadingFilter;
+    private final AtomicBoolean registeredFilterLoading = new AtomicBoolean(false);
+    private double registeredFilterFalsePositiveRate = 0.01;
 
     public PlayerDataDAO(DatabaseManager dbManager) {
+        this(dbManager, 0, 0);
+    }
+
+    public PlayerDataDAO(DatabaseManager dbManager, int cacheSize, long cacheTtlSeconds) {
         this.dbManager = dbManager;
+        this.cache = new ExpiringCache<>(cacheSize, cacheTtlSeconds, TimeUnit.SECONDS);
+
+        this.dialect = dbManager.getDialect();
+        this.insertIgnoreSql = dialect.insertIgnore("auth_players", "uuid",
+                "uuid", "username", "password_hash", "last_login_ip", "registration_date");
+        this.createPlayerSql = dialect.insertIgnore("auth_players", "uuid",
+                "uuid", "username", "password_hash", "last_login_ip", "registration_date", "last_login");
+        this.insertIgnoreRepeatsKey = dialect.insertIgnoreRepeatsKey();
     }
 
     public Optional<PlayerData> getPlayerByUUID(UUID uuid) {
-        String sql = "SELECT * FROM auth_players WHERE uuid =?";
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, uuid.toString());
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                PlayerData data = new PlayerData(
-                        UUID.fromString(rs.getString("uuid")),
-                        rs.getString("username"),
-                        rs.getString("password_hash"),
-                        rs.getString("last_login_ip"),
-                        rs.getTimestamp("registration_date")
-                );
-                return Optional.of(data);
-            }
+        try {
+            return findPlayer(uuid);
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return Optional.empty();
     }
 
-    public void createPlayer(PlayerData data) {
-        String sql = "INSERT INTO auth_players(uuid, username, password_hash, last_login_ip, registration_date) VALUES(?,?,?,?,?)";
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Like getPlayerByUUID, but a failed lookup is thrown instead of being reported as "not registered".
+    public Optional<PlayerData> findPlayer(UUID uuid) throws SQLException {
+        Optional<PlayerData> cached = cache.get(uuid);
+        if (cached != null) {
+            return cached;
+        }
 
-            pstmt.setString(1, data.getUuid().toString());
-            pstmt.setString(2, data.getUsername());
-            pstmt.setString(3, data.getPasswordHash());
-            pstmt.setString(4, data.getLastLoginIp());
-            pstmt.setTimestamp(5, data.getRegistrationDate());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        Optional<PlayerData> data = loadPlayer(uuid);
+        cache.put(uuid, data);
+        return data;
+    }
+
+    private Optional<PlayerData> loadPlayer(UUID uuid) throws SQLException {
+        String sql = "SELECT * FROM auth_players WHERE uuid =?";
+        return dbManager.shardFor(uuid).read(uuid, session -> {
+            PreparedStatement pstmt = session.prepare(sql);
+            pstmt.setBytes(1, UuidCodec.toBytes(uuid));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return Optional.empty();
+                }
+
+                return Optional.of(readPlayer(rs));
+            }
+        });
+    }
+
+    // Loads the auth profiles of several players with one query per shard, joining each account with its
+    // premium status. Every requested UUID is in the result; unregistered ones get an empty profile. The
+    // player record cache is primed along the way.
+    public Map<UUID, AuthProfile> getProfilesByUUIDs(Set<UUID> uuids) throws SQLException {
+        Map<UUID, AuthProfile> found = new HashMap<>();
+        for (Map.Entry<DatabaseManager, List<UUID>> group : dbManager.groupByShard(uuids, uuid -> uuid).entrySet()) {
+            found.putAll(loadProfiles(group.getKey(), group.getValue()));
+        }
+
+        Map<UUID, AuthProfile> result = new HashMap<>();
+        for (UUID uuid : uuids) {
+            AuthProfile profile = found.getOrDefault(uuid, AuthProfile.unregistered(uuid));
+            cache.put(uuid, profile.getPlayerData());
+            result.put(uuid, profile);
         }
+        return result;
     }
 
-    public void updateLastLoginIp(UUID uuid, String ip) {
-        String sql = "UPDATE auth_players SET last_login_ip =? WHERE uuid =?";
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, ip);
-            pstmt.setString(2, uuid.toString());
-            pstmt.executeUpdate();
+    private Map<UUID, AuthProfile> loadProfiles(DatabaseManager shard, List<UUID> keys) throws SQLException {
+        // Pad the key list to a power of two so only a handful of distinct statements get prepared.
+        int parameters = keys.size() == 1 ? 1 : Integer.highestOneBit(keys.size() - 1) << 1;
+        String sql = "SELECT p.*, pr.is_premium FROM auth_players p LEFT JOIN auth_premium pr ON pr.uuid = p.uuid"
+                + " WHERE p.uuid IN (" + SqlDialect.placeholders(parameters) + ")";
+
+        return shard.read(keys, session -> {
+            PreparedStatement pstmt = session.prepare(sql);
+            for (int i = 0; i < parameters; i++) {
+                pstmt.setBytes(i + 1, UuidCodec.toBytes(keys.get(Math.min(i, keys.size() - 1))));
+            }
+
+            Map<UUID, AuthProfile> rows = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    PlayerData data = readPlayer(rs);
+                    // A missing premium row reads as false.
+                    rows.put(data.getUuid(), new AuthProfile(data.getUuid(), data, dialect.getBoolean(rs, "is_premium")));
+                }
+            }
+            return rows;
+        });
+    }
+
+    private PlayerData readPlayer(ResultSet rs) throws SQLException {
+        return new PlayerData(
+                UuidCodec.fromBytes(rs.getBytes("uuid")),
+                rs.getString("username"),
+                rs.getString("password_hash"),
+                rs.getString("last_login_ip"),
+                rs.getTimestamp("registration_date"),
+                rs.getTimestamp("last_login")
+        );
+    }
+
+    // Builds the registered-account filter by streaming every UUID in auth_players. Until it is complete,
+    // the previous filter (if any) keeps answering, and new registrations go into both. Returns the
+    // number of accounts read, or -1 if a load is already running.
+    public long loadRegisteredFilter(double falsePositiveRate) throws SQLException {
+        if (!registeredFilterLoading.compareAndSet(false, true)) {
+            return -1;
+        }
+
+        try {
+            registeredFilterFalsePositiveRate = falsePositiveRate;
+            long count = 0;
+            for (DatabaseManager shard : dbManager.getShards()) {
+                count += shard.read(session -> {
+                    try (ResultSet rs = session.prepare("SELECT COUNT(*) FROM auth_players").executeQuery()) {
+                        return rs.next() ? rs.getLong(1) : 0L;
+                    }
+                });
+            }
+
+            // Leave room for growth; past its capacity the filter is rebuilt.
+            UuidBloomFilter filter = new UuidBloomFilter(Math.max(count * 2, 10_000), falsePositiveRate);
+            loadingFilter = filter;
+
+            long loaded = 0;
+            for (DatabaseManager shard : dbManager.getShards()) {
+                loaded += shard.read(session -> {
+                    try (PreparedStatement pstmt = session.getConnection().prepareStatement("SELECT uuid FROM auth_players",
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                        pstmt.setFetchSize(dialect.streamingFetchSize());
+                        long rows = 0;
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                filter.add(UuidCodec.fromBytes(rs.getBytes(1)));
+                                rows++;
+                            }
+                        }
+                        return rows;
+                    }
+                });
+            }
+
+            // Publish before clearing loadingFilter so a concurrent registration always reaches the new filter.
+            registeredFilter = filter;
+            return loaded;
+        } finally {
+            loadingFilter = null;
+            registeredFilterLoading.set(false);
+        }
+    }
+
+    // False only when the player is certainly not registered. Always true until the filter has loaded.
+    // Registrations made by other servers sharing the database are not seen, so a false answer may only
+    // be used to skip a read, never to decide whether an account exists.
+    public boolean mightBeRegistered(UUID uuid) {
+        UuidBloomFilter filter = registeredFilter;
+        return filter == null || filter.mightContain(uuid);
+    }
+
+    private void addRegistered(UUID uuid) {
+        UuidBloomFilter loading = loadingFilter;
+        if (loading != null) {
+            loading.add(uuid);
+        }
+        UuidBloomFilter filter = registeredFilter;
+        if (filter == null) {
+            return;
+        }
+        filter.add(uuid);
+
+        if (filter.isOverCapacity() && !registeredFilterLoading.get()) {
+            try {
+                dbManager.getExecutor().execute(() -> {
+                    try {
+                        loadRegisteredFilter(registeredFilterFalsePositiveRate);
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                // Tried again on the next registration.
+            }
+        }
+    }
+
+    // Drops the cached row, e.g. once the player leaves.
+    public void evictCached(UUID uuid) {
+        cache.invalidate(uuid);
+    }
+
+    // Inserts the account unless one with the same UUID exists, e.g. registered on another server that
+    // shares the database. Returns false in that case; anything else that goes wrong is thrown.
+    public boolean createPlayer(PlayerData data) throws SQLException {
+        int inserted;
+        try {
+            inserted = dbManager.shardFor(data.getUuid()).write(session -> {
+                PreparedStatement pstmt = session.prepare(createPlayerSql);
+                pstmt.setBytes(1, UuidCodec.toBytes(data.getUuid()));
+                pstmt.setString(2, data.getUsername());
+                pstmt.setString(3, data.getPasswordHash());
+                pstmt.setString(4, data.getLastLoginIp());
+                pstmt.setTimestamp(5, data.getRegistrationDate());
+                pstmt.setTimestamp(6, data.getLastLogin());
+                if (insertIgnoreRepeatsKey) {
+                    pstmt.setBytes(7, UuidCodec.toBytes(data.getUuid()));
+                }
+                return pstmt.executeUpdate();
+            });
         } catch (SQLException e) {
-            e.printStackTrace();
+            // H2's insert-ignore is a NOT EXISTS check, so a concurrent insert can still hit the unique key.
+            if (!isDuplicateKey(e)) {
+                throw e;
+            }
+            inserted = 0;
+        }
+
+        dbManager.markWritten(data.getUuid());
+        addRegistered(data.getUuid());
+        if (inserted == 0) {
+            cache.invalidate(data.getUuid());
+            return false;
+        }
+        cache.put(data.getUuid(), Optional.of(data));
+        return true;
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+
+    // Inserts all rows in one JDBC batch and transaction per shard, leaving accounts that already exist
+    // untouched. Returns the number of rows inserted.
+    public int createPlayers(List<PlayerData> players) throws SQLException {
+        if (players.isEmpty()) {
+            return 0;
+        }
+
+        int inserted = 0;
+        for (Map.Entry<DatabaseManager, List<PlayerData>> group : dbManager.groupByShard(players, PlayerData::getUuid).entrySet()) {
+            inserted += insertIgnore(group.getKey(), group.getValue());
+        }
+        players.forEach(data -> {
+            dbManager.markWritten(data.getUuid());
+            cache.invalidate(data.getUuid());
+            addRegistered(data.getUuid());
+        });
+        return inserted;
+    }
+
+    private int insertIgnore(DatabaseManager shard, List<PlayerData> players) throws SQLException {
+        // Inserting in key order keeps two overlapping batches from each waiting on a row the other holds.
+        List<PlayerData> sorted = new ArrayList<>(players);
+        sorted.sort(Comparator.comparing(PlayerData::getUuid));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return insertIgnoreBatch(shard, sorted);
+            } catch (SQLException e) {
+                // H2's insert-ignore is a NOT EXISTS check, so an account a concurrent batch just inserted can still
+                // hit the unique key. The batch was rolled back; running it again skips that account.
+                if (!isDuplicateKey(e) || attempt == MAX_INSERT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private int insertIgnoreBatch(DatabaseManager shard, List<PlayerData> players) throws SQLException {
+        return shard.writeTransaction(session -> {
+            int existing = countStored(session, players);
+            PreparedStatement pstmt = session.prepare(insertIgnoreSql);
+            for (PlayerData data : players) {
+                pstmt.setBytes(1, UuidCodec.toBytes(data.getUuid()));
+                pstmt.setString(2, data.getUsername());
+                pstmt.setString(3, data.getPasswordHash());
+                pstmt.setString(4, data.getLastLoginIp());
+                pstmt.setTimestamp(5, data.getRegistrationDate());
+                if (insertIgnoreRepeatsKey) {
+                    pstmt.setBytes(6, UuidCodec.toBytes(data.getUuid()));
+                }
+                pstmt.addBatch();
+            }
+
+            int count = 0;
+            for (int result : pstmt.executeBatch()) {
+                if (result == Statement.SUCCESS_NO_INFO) {
+                    // MySQL's rewritten batches don't report per-row counts, so count what the batch added instead.
+                    return countStored(session, players) - existing;
+                }
+                if (result > 0) {
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    // Number of the given accounts that exist, seen from inside the caller's transaction.
+    private int countStored(SqlSession session, List<PlayerData> players) throws SQLException {
+        Set<UUID> unique = new LinkedHashSet<>();
+        for (PlayerData data : players) {
+            unique.add(data.getUuid());
         }
+        List<UUID> uuids = new ArrayList<>(unique);
+        int count = 0;
+        // Stays below SQLite's bound parameter limit on older versions.
+        for (int from = 0; from < uuids.size(); from += 500) {
+            List<UUID> part = uuids.subList(from, Math.min(uuids.size(), from + 500));
+            PreparedStatement pstmt = session.prepare("SELECT COUNT(*) FROM auth_players WHERE uuid IN ("
+                    + SqlDialect.placeholders(part.size()) + ")");
+            for (int i = 0; i < part.size(); i++) {
+                pstmt.setBytes(i + 1, UuidCodec.toBytes(part.get(i)));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    count += rs.getInt(1);
+                }
+            }
+        }
+        return count;
+    }
+
+    // Applies queued login bookkeeping (last IP and time) in one JDBC batch and transaction.
+    public void updateLastLogins(Map<UUID, LoginRecord> logins) throws SQLException {
+        if (logins.isEmpty()) {
+            return;
+        }
+
+        String sql = "UPDATE auth_players SET last_login_ip =?, last_login =? WHERE uuid =?";
+        for (Map.Entry<DatabaseManager, List<Map.Entry<UUID, LoginRecord>>> group
+                : dbManager.groupByShard(logins.entrySet(), Map.Entry::getKey).entrySet()) {
+            group.getKey().writeTransaction(session -> {
+                PreparedStatement pstmt = session.prepare(sql);
+                for (Map.Entry<UUID, LoginRecord> entry : group.getValue()) {
+                    pstmt.setString(1, entry.getValue().getIp());
+                    pstmt.setTimestamp(2, entry.getValue().getTime());
+                    pstmt.setBytes(3, UuidCodec.toBytes(entry.getKey()));
+                    pstmt.addBatch();
+                }
+                return pstmt.executeBatch();
+            });
+        }
+        logins.keySet().forEach(cache::invalidate);
+    }
+
+    public void updatePasswordHash(UUID uuid, String passwordHash) throws SQLException {
+        String sql = "UPDATE auth_players SET password_hash =? WHERE uuid =?";
+        dbManager.shardFor(uuid).write(session -> {
+            PreparedStatement pstmt = session.prepare(sql);
+            pstmt.setString(1, passwordHash);
+            pstmt.setBytes(2, UuidCodec.toBytes(uuid));
+            return pstmt.executeUpdate();
+        });
+        dbManager.markWritten(uuid);
+        cache.invalidate(uuid);
     }
 
     public boolean isPlayerRegistered(UUID uuid) {
@@ -1,13 +1,14 @@
 package io.github.poelsk.authreloaded.database;
 
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
 import io.github.poelsk.authreloaded.AuthReloaded;
 import org.bukkit.configuration.ConfigurationSection;
+import org.sqlite.JDBC;
 
 import java.io.File;
+import java.sql.SQLException;
+import java.util.List;
 
-public class SQLiteDataSource implements IDataSource {
+public class SQLiteDataSource {
 
     private final AuthReloaded plugin;
 
@@ -15,27 +16,40 @@ public class SQLiteDataSource implements IDataSource {
         this.plugin = plugin;
     }
 
-    @Override
-    public HikariDataSource getDataSource() {
-        HikariConfig config = new HikariConfig();
+    // Shard 0 is the configured file; further shards sit next to it, e.g. database-shard1.db.
+    public SQLiteEngine createEngine(int shard) {
         ConfigurationSection dbConfig = plugin.getConfig().getConfigurationSection("database.sqlite");
 
         String dbPath = dbConfig.getString("file", "database.db").replace("{pluginDir}", plugin.getDataFolder().getAbsolutePath());
+        if (shard > 0) {
+            int extension = dbPath.lastIndexOf('.');
+            dbPath = extension > dbPath.lastIndexOf(File.separatorChar)
+                    ? dbPath.substring(0, extension) + "-shard" + shard + dbPath.substring(extension)
+                    : dbPath + "-shard" + shard;
+        }
         File dbFile = new File(dbPath);
         if (!dbFile.getParentFile().exists()) {
             dbFile.getParentFile().mkdirs();
         }
 
-        config.setJdbcUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
-
-        ConfigurationSection poolSettings = plugin.getConfig().getConfigurationSection("database.pool-settings");
-        if (poolSettings!= null) {
-            config.setMaximumPoolSize(poolSettings.getInt("maximum-pool-size", 10));
-            config.setConnectionTimeout(poolSettings.getInt("connection-timeout", 30000));
-            config.setIdleTimeout(poolSettings.getInt("idle-timeout", 600000));
-            config.setMaxLifetime(poolSettings.getInt("max-lifetime", 1800000));
+        long connectionTimeout = plugin.getConfig().getLong("database.pool-settings.connection-timeout", 30000);
+        String synchronous = dbConfig.getString("synchronous", "NORMAL").toUpperCase();
+        if (!List.of("OFF", "NORMAL", "FULL", "EXTRA").contains(synchronous)) {
+            plugin.getLogger().warning("Unknown SQLite synchronous mode '" + synchronous + "', using NORMAL.");
+            synchronous = "NORMAL";
         }
 
-        return new HikariDataSource(config);
+        try {
+            // The driver is created directly since DriverManager doesn't always see the plugin's libraries.
+            return new SQLiteEngine(new JDBC(), dbFile,
+                    dbConfig.getInt("reader-connections", 4),
+                    synchronous,
+                    dbConfig.getInt("cache-size-kib", 16384),
+                    dbConfig.getLong("mmap-size-mib", 64) * 1024 * 1024,
+                    connectionTimeout,
+                    plugin.getLogger());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not open SQLite database " + dbFile.getAbsolutePath(), e);
+        }
     }
-}
\ No newline at end of file
+}
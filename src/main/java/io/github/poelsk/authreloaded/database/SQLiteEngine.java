@@ -0,0 +1,169 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// SQLite allows many readers but only one writer at a time. Instead of letting pooled connections
+// fight over the write lock (SQLITE_BUSY), all writes go through one connection on one thread, and
+// reads use a separate set of read-only connections. The database runs in WAL mode so readers are
+// never blocked by the writer.
+public class SQLiteEngine {
+
+    // SQLITE_OPEN_READONLY
+    private static final String OPEN_READ_ONLY = "1";
+
+    private final Logger logger;
+    private final SqlSession writer;
+    private final ThreadPoolExecutor writerExecutor;
+    private final BlockingQueue<SqlSession> idleReaders;
+    private final List<SqlSession> readers = new ArrayList<>();
+    private final long readTimeoutMillis;
+    private volatile Thread writerThread;
+
+    public SQLiteEngine(Driver driver, File file, int readerCount, String synchronous, int cacheSizeKib,
+                        long mmapSizeBytes, long readTimeoutMillis, Logger logger) throws SQLException {
+        this.logger = logger;
+        this.readTimeoutMillis = readTimeoutMillis;
+
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        this.writer = SqlSession.cached(connect(driver, url, new Properties()));
+        try (Statement stmt = writer.getConnection().createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=" + synchronous);
+        }
+        applyConnectionPragmas(writer.getConnection(), cacheSizeKib, mmapSizeBytes);
+
+        int count = Math.max(1, readerCount);
+        this.idleReaders = new ArrayBlockingQueue<>(count);
+        Properties readOnly = new Properties();
+        readOnly.setProperty("open_mode", OPEN_READ_ONLY);
+        for (int i = 0; i < count; i++) {
+            Connection connection = connect(driver, url, readOnly);
+            applyConnectionPragmas(connection, cacheSizeKib, mmapSizeBytes);
+            SqlSession reader = SqlSession.cached(connection);
+            readers.add(reader);
+            idleReaders.add(reader);
+        }
+
+        this.writerExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1024), r -> {
+            Thread t = new Thread(r, "AuthReloaded-SQLite-Writer");
+            t.setDaemon(true);
+            writerThread = t;
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static Connection connect(Driver driver, String url, Properties properties) throws SQLException {
+        Connection connection = driver.connect(url, properties);
+        if (connection == null) {
+            throw new SQLException("No driver accepted " + url);
+        }
+        return connection;
+    }
+
+    // cache_size, mmap_size and busy_timeout are per connection; journal_mode is stored in the file.
+    private static void applyConnectionPragmas(Connection connection, int cacheSizeKib, long mmapSizeBytes) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // A negative cache_size is in KiB instead of pages.
+            stmt.execute("PRAGMA cache_size=" + -Math.max(0, cacheSizeKib));
+            stmt.execute("PRAGMA mmap_size=" + Math.max(0, mmapSizeBytes));
+            stmt.execute("PRAGMA busy_timeout=5000");
+        }
+    }
+
+    public int getReaderCount() {
+        return readers.size();
+    }
+
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        SqlSession reader;
+        try {
+            reader = idleReaders.poll(readTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a SQLite read connection", e);
+        }
+        if (reader == null) {
+            throw new SQLException("Timed out waiting for a SQLite read connection");
+        }
+
+        try {
+            return work.execute(reader);
+        } finally {
+            idleReaders.add(reader);
+        }
+    }
+
+    // Runs the work on the writer thread and waits for it. Throws RejectedExecutionException when the write queue is full.
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        if (Thread.currentThread() == writerThread) {
+            return runWrite(work);
+        }
+
+        Future<T> future = writerExecutor.submit(() -> runWrite(work));
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a SQLite write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    private <T> T runWrite(SqlWork<T> work) throws SQLException {
+        try {
+            return work.execute(writer);
+        } finally {
+            // Never let an unfinished transaction leak into the next write.
+            Connection connection = writer.getConnection();
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    public void close() {
+        writerExecutor.shutdown();
+        try {
+            if (!writerExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                writerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        readers.forEach(SqlSession::closeAll);
+
+        // Fold the WAL back into the main file so it doesn't linger while the server is off.
+        try (Statement stmt = writer.getConnection().createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (SQLException e) {
+            logger.warning("Could not checkpoint the SQLite WAL: " + e.getMessage());
+        }
+        writer.closeAll();
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+// Moves player rows between SQLite shard files after the shard count changed, including from a single
+// file to several. Rows are copied to their new shard before they are deleted from the old one, so a run
+// that is interrupted can simply be started again.
+public class SQLiteResharder {
+
+    private static final String[] PLAYER_COLUMNS = {"uuid", "username", "password_hash", "last_login_ip", "registration_date", "last_login"};
+    private static final String[] PREMIUM_COLUMNS = {"uuid", "is_premium", "verified_date", "last_verification"};
+
+    private final List<DatabaseManager> shards;
+    private final int shardCount;
+    private final int batchSize;
+    private final Logger logger;
+
+    // shards holds every file that may contain rows, which is more than shardCount when shrinking.
+    public SQLiteResharder(List<DatabaseManager> shards, int shardCount, int batchSize, Logger logger) {
+        this.shards = shards;
+        this.shardCount = shardCount;
+        this.batchSize = batchSize;
+        this.logger = logger;
+    }
+
+    // The shard count the files were last laid out for, as recorded in the first shard. 1 if never recorded.
+    public static int readShardCount(DatabaseManager first) throws SQLException {
+        return first.write(session -> {
+            createLayoutTable(session);
+            try (ResultSet rs = session.prepare("SELECT shard_count FROM shard_layout").executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 1;
+            }
+        });
+    }
+
+    public long reshard() throws SQLException {
+        long moved = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            moved += moveRows(i, "auth_players", "id", PLAYER_COLUMNS);
+            moved += moveRows(i, "auth_premium", "uuid", PREMIUM_COLUMNS);
+        }
+
+        shards.get(0).writeTransaction(session -> {
+            createLayoutTable(session);
+            session.prepare("DELETE FROM shard_layout").executeUpdate();
+            PreparedStatement pstmt = session.prepare("INSERT INTO shard_layout (shard_count) VALUES (?)");
+            pstmt.setInt(1, shardCount);
+            return pstmt.executeUpdate();
+        });
+        logger.info("Resharded SQLite storage into " + shardCount + " file(s), moved " + moved + " rows.");
+        return moved;
+    }
+
+    // Walks the source table in keyset order and moves every row that now belongs to another shard.
+    private long moveRows(int source, String table, String orderColumn, String[] columns) throws SQLException {
+        DatabaseManager from = shards.get(source);
+        String select = "SELECT " + orderColumn + " AS position, " + String.join(", ", columns) + " FROM " + table
+                + " WHERE " + orderColumn + " > ? ORDER BY " + orderColumn + " LIMIT " + batchSize;
+        String delete = "DELETE FROM " + table + " WHERE uuid = ?";
+
+        long moved = 0;
+        Object position = "id".equals(orderColumn) ? (Object) 0L : new byte[0];
+        while (true) {
+            Object after = position;
+            List<Object[]> batch = new ArrayList<>();
+            Object[] last = new Object[1];
+            from.read(session -> {
+                PreparedStatement pstmt = session.prepare(select);
+                pstmt.setObject(1, after);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        last[0] = rs.getObject("position");
+                        Object[] row = new Object[columns.length];
+                        for (int c = 0; c < columns.length; c++) {
+                            row[c] = rs.getObject(c + 2);
+                        }
+                        batch.add(row);
+                    }
+                }
+                return null;
+            });
+            if (batch.isEmpty()) {
+                return moved;
+            }
+            position = last[0];
+
+            Map<Integer, List<Object[]>> byTarget = new HashMap<>();
+            for (Object[] row : batch) {
+                int target = DatabaseManager.shardIndex(UuidCodec.fromBytes((byte[]) row[0]), shardCount);
+                if (target != source) {
+                    byTarget.computeIfAbsent(target, key -> new ArrayList<>()).add(row);
+                }
+            }
+
+            for (Map.Entry<Integer, List<Object[]>> entry : byTarget.entrySet()) {
+                DatabaseManager to = shards.get(entry.getKey());
+                String insert = to.getDialect().insertIgnore(table, "uuid", columns);
+                to.writeTransaction(session -> {
+                    PreparedStatement pstmt = session.prepare(insert);
+                    for (Object[] row : entry.getValue()) {
+                        for (int c = 0; c < columns.length; c++) {
+                            pstmt.setObject(c + 1, row[c]);
+                        }
+                        pstmt.addBatch();
+                    }
+                    return pstmt.executeBatch();
+                });
+                from.writeTransaction(session -> {
+                    PreparedStatement pstmt = session.prepare(delete);
+                    for (Object[] row : entry.getValue()) {
+                        pstmt.setBytes(1, (byte[]) row[0]);
+                        pstmt.addBatch();
+                    }
+                    return pstmt.executeBatch();
+                });
+                moved += entry.getValue().size();
+            }
+        }
+    }
+
+    private static void createLayoutTable(SqlSession session) throws SQLException {
+        try (Statement stmt = session.getConnection().createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS shard_layout (shard_count INTEGER NOT NULL)");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A connection lent to a SqlWork. Long-lived connections keep their prepared statements between
+// uses; pooled ones close them when the work is done. Callers must not close what prepare() returns.
+public class SqlSession {
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statementCache;
+    private final List<PreparedStatement> openStatements = new ArrayList<>();
+
+    private SqlSession(Connection connection, Map<String, PreparedStatement> statementCache) {
+        this.connection = connection;
+        this.statementCache = statementCache;
+    }
+
+    static SqlSession pooled(Connection connection) {
+        return new SqlSession(connection, null);
+    }
+
+    static SqlSession cached(Connection connection) {
+        return new SqlSession(connection, new HashMap<>());
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        if (statementCache == null) {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            openStatements.add(statement);
+            return statement;
+        }
+
+        PreparedStatement statement = statementCache.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statementCache.put(sql, statement);
+        } else {
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+        return statement;
+    }
+
+    // Closes statements that are not kept between uses. The connection itself is left to its owner.
+    void release() {
+        for (PreparedStatement statement : openStatements) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        openStatements.clear();
+    }
+
+    void closeAll() {
+        release();
+        if (statementCache != null) {
+            for (PreparedStatement statement : statementCache.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            statementCache.clear();
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
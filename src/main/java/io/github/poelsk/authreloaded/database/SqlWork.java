@@ -0,0 +1,9 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.sql.SQLException;
+
+// A unit of database work. DatabaseManager decides which connection (and thread) it runs on.
+@FunctionalInterface
+public interface SqlWork<T> {
+    T execute(SqlSession session) throws SQLException;
+}
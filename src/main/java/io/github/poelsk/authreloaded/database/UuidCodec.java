@@ -0,0 +1,26 @@
+package io.github.poelsk.authreloaded.database;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+// UUIDs are stored as 16 raw bytes (most significant half first) instead of 36-character strings.
+public final class UuidCodec {
+
+    private UuidCodec() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            throw new IllegalArgumentException("A binary UUID must be 16 bytes long");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
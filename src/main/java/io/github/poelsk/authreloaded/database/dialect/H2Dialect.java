@@ -0,0 +1,65 @@
+package io.github.poelsk.authreloaded.database.dialect;
+
+import java.util.List;
+
+public class H2Dialect implements SqlDialect {
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public String binaryKeyType() {
+        return "BINARY(16)";
+    }
+
+    @Override
+    public String autoIncrementPrimaryKey() {
+        return "INTEGER PRIMARY KEY AUTO_INCREMENT";
+    }
+
+    @Override
+    public String booleanColumn(boolean defaultValue) {
+        return "BOOLEAN NOT NULL DEFAULT " + (defaultValue ? "TRUE" : "FALSE");
+    }
+
+    // H2 has no insert-ignore outside MySQL mode. The NOT EXISTS check isn't atomic, so a concurrent insert of the
+    // same key can still fail on the unique key; PlayerDataDAO treats that as "already exists".
+    @Override
+    public String insertIgnore(String table, String key, String... columns) {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") SELECT " +
+                SqlDialect.placeholders(columns.length) + " WHERE NOT EXISTS (SELECT 1 FROM " + table +
+                " WHERE " + key + " = ?)";
+    }
+
+    @Override
+    public boolean insertIgnoreRepeatsKey() {
+        return true;
+    }
+
+    @Override
+    public String upsert(String table, String key, String... columns) {
+        // MERGE ... KEY only touches the listed columns when the row exists.
+        return "MERGE INTO " + table + " (" + String.join(", ", columns) + ") KEY (" + key + ") VALUES (" +
+                SqlDialect.placeholders(columns.length) + ")";
+    }
+
+    @Override
+    public String alterColumnType(String table, String column, String type, boolean nullable) {
+        // SET DATA TYPE keeps the column's NOT NULL constraint.
+        return "ALTER TABLE " + table + " ALTER COLUMN " + column + " SET DATA TYPE " + type;
+    }
+
+    @Override
+    public List<String> swapTables(String table, String replacement, String backup) {
+        return List.of("ALTER TABLE " + table + " RENAME TO " + backup,
+                "ALTER TABLE " + replacement + " RENAME TO " + table);
+    }
+
+    @Override
+    public String restartIdentity(String table, String column, long nextValue) {
+        // H2 doesn't advance the identity when ids are inserted explicitly.
+        return "ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + nextValue;
+    }
+}
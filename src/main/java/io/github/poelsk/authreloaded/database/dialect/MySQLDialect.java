@@ -0,0 +1,63 @@
+package io.github.poelsk.authreloaded.database.dialect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MySQLDialect implements SqlDialect {
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public String binaryKeyType() {
+        return "BINARY(16)";
+    }
+
+    @Override
+    public String autoIncrementPrimaryKey() {
+        return "INTEGER PRIMARY KEY AUTO_INCREMENT";
+    }
+
+    @Override
+    public String booleanColumn(boolean defaultValue) {
+        return "BOOLEAN NOT NULL DEFAULT " + (defaultValue ? "TRUE" : "FALSE");
+    }
+
+    @Override
+    public String insertIgnore(String table, String key, String... columns) {
+        return "INSERT IGNORE INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                SqlDialect.placeholders(columns.length) + ")";
+    }
+
+    @Override
+    public String upsert(String table, String key, String... columns) {
+        List<String> updates = new ArrayList<>();
+        for (String column : columns) {
+            if (!column.equals(key)) {
+                updates.add(column + " = VALUES(" + column + ")");
+            }
+        }
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                SqlDialect.placeholders(columns.length) + ") ON DUPLICATE KEY UPDATE " + String.join(", ", updates);
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        // Connector/J only streams row by row with this exact value.
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String alterColumnType(String table, String column, String type, boolean nullable) {
+        // MODIFY redefines the whole column, so nullability has to be repeated.
+        return "ALTER TABLE " + table + " MODIFY " + column + " " + type + (nullable ? " NULL" : " NOT NULL");
+    }
+
+    @Override
+    public List<String> swapTables(String table, String replacement, String backup) {
+        // A multi-table RENAME is atomic in MySQL.
+        return List.of("RENAME TABLE " + table + " TO " + backup + ", " + replacement + " TO " + table);
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.poelsk.authreloaded.database.dialect;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SQLiteDialect implements SqlDialect {
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public String binaryKeyType() {
+        return "BLOB";
+    }
+
+    @Override
+    public String autoIncrementPrimaryKey() {
+        return "INTEGER PRIMARY KEY AUTOINCREMENT";
+    }
+
+    @Override
+    public String booleanColumn(boolean defaultValue) {
+        return "INTEGER NOT NULL DEFAULT " + (defaultValue ? 1 : 0);
+    }
+
+    @Override
+    public String insertIgnore(String table, String key, String... columns) {
+        return "INSERT OR IGNORE INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                SqlDialect.placeholders(columns.length) + ")";
+    }
+
+    @Override
+    public String upsert(String table, String key, String... columns) {
+        List<String> updates = new ArrayList<>();
+        for (String column : columns) {
+            if (!column.equals(key)) {
+                updates.add(column + " = excluded." + column);
+            }
+        }
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                SqlDialect.placeholders(columns.length) + ") ON CONFLICT(" + key + ") DO UPDATE SET " +
+                String.join(", ", updates);
+    }
+
+    @Override
+    public String alterColumnType(String table, String column, String type, boolean nullable) {
+        // SQLite does not enforce column lengths.
+        return null;
+    }
+
+    @Override
+    public List<String> swapTables(String table, String replacement, String backup) {
+        return List.of("ALTER TABLE " + table + " RENAME TO " + backup,
+                "ALTER TABLE " + replacement + " RENAME TO " + table);
+    }
+
+    @Override
+    public void setBoolean(PreparedStatement statement, int index, boolean value) throws SQLException {
+        statement.setInt(index, value ? 1 : 0);
+    }
+
+    @Override
+    public boolean getBoolean(ResultSet resultSet, String column) throws SQLException {
+        return resultSet.getInt(column) == 1;
+    }
+}
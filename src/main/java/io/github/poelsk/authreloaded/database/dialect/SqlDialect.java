@@ -0,0 +1,75 @@
+package io.github.poelsk.authreloaded.database.dialect;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+// Everything that differs between the supported databases: DDL types, upsert and insert-ignore
+// syntax and how booleans are stored. Resolved once when the database is opened, so callers build
+// their SQL up front instead of checking the configured type on every query.
+public interface SqlDialect {
+
+    // Also the folder its migration scripts live in.
+    String getName();
+
+    String binaryKeyType();
+
+    String autoIncrementPrimaryKey();
+
+    String booleanColumn(boolean defaultValue);
+
+    // Inserts a row unless one with the same key exists.
+    String insertIgnore(String table, String key, String... columns);
+
+    // Whether insertIgnore() takes the key value a second time, after the column values.
+    default boolean insertIgnoreRepeatsKey() {
+        return false;
+    }
+
+    // Inserts a row, or updates the given non-key columns if one with the same key exists.
+    // Columns not listed keep their value on update and their default on insert.
+    String upsert(String table, String key, String... columns);
+
+    // Returns null when the database doesn't enforce column types.
+    String alterColumnType(String table, String column, String type, boolean nullable);
+
+    // Renames table to backup and replacement to table.
+    List<String> swapTables(String table, String replacement, String backup);
+
+    // Statement to run after rows were inserted with explicit ids, or null if the database keeps track itself.
+    default String restartIdentity(String table, String column, long nextValue) {
+        return null;
+    }
+
+    // Fetch size that makes the driver stream a large result instead of loading it all at once.
+    default int streamingFetchSize() {
+        return 1000;
+    }
+
+    default void setBoolean(PreparedStatement statement, int index, boolean value) throws SQLException {
+        statement.setBoolean(index, value);
+    }
+
+    default boolean getBoolean(ResultSet resultSet, String column) throws SQLException {
+        return resultSet.getBoolean(column);
+    }
+
+    static SqlDialect forType(String type) {
+        switch (type.toLowerCase()) {
+            case "mysql":
+                return new MySQLDialect();
+            case "h2":
+                return new H2Dialect();
+            case "sqlite":
+                return new SQLiteDialect();
+            default:
+                throw new IllegalStateException("Unsupported database type: " + type);
+        }
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
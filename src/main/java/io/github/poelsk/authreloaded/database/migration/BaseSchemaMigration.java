@@ -0,0 +1,74 @@
+package io.github.poelsk.authreloaded.database.migration;
+
+import io.github.poelsk.authreloaded.database.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+// Creates the original tables. Installs from before schema versioning already have them, but may
+// still lack columns added since, so those are brought up to date here as well.
+public class BaseSchemaMigration extends ScriptMigration {
+
+    private final Logger logger;
+
+    public BaseSchemaMigration(DatabaseManager databaseManager, Logger logger) {
+        super(databaseManager, 1, "Base schema", "V1__base_schema.sql");
+        this.logger = logger;
+    }
+
+    @Override
+    public void apply() throws SQLException {
+        super.apply();
+        databaseManager.write(session -> {
+            Connection conn = session.getConnection();
+            widenPasswordHashColumn(conn);
+            addLastLoginColumn(conn);
+            return null;
+        });
+    }
+
+    // Tables created before multi-algorithm support only fit 60-character BCrypt hashes.
+    private void widenPasswordHashColumn(Connection conn) throws SQLException {
+        String sql = databaseManager.getDialect().alterColumnType("auth_players", "password_hash", "VARCHAR(255)", false);
+        if (sql == null) {
+            return;
+        }
+
+        int size = getColumnSize(conn, "auth_players", "password_hash");
+        if (size != -1 && size < 255) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sql);
+            }
+            logger.info("Widened auth_players.password_hash to 255 characters.");
+        }
+    }
+
+    private void addLastLoginColumn(Connection conn) throws SQLException {
+        if (getColumnSize(conn, "auth_players", "last_login") != -1) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE auth_players ADD COLUMN last_login TIMESTAMP NULL");
+        }
+        logger.info("Added auth_players.last_login column.");
+    }
+
+    // Returns the declared size of the column, or -1 if it doesn't exist. H2 reports identifiers in upper case.
+    private int getColumnSize(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        for (String tableName : new String[]{table, table.toUpperCase()}) {
+            for (String columnName : new String[]{column, column.toUpperCase()}) {
+                try (ResultSet rs = metaData.getColumns(conn.getCatalog(), null, tableName, columnName)) {
+                    if (rs.next()) {
+                        return rs.getInt("COLUMN_SIZE");
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
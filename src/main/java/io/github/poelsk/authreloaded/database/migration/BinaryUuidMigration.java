@@ -0,0 +1,372 @@
+package io.github.poelsk.authreloaded.database.migration;
+
+import io.github.poelsk.authreloaded.database.DatabaseManager;
+import io.github.poelsk.authreloaded.database.UuidCodec;
+import io.github.poelsk.authreloaded.database.dialect.SqlDialect;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+// Moves auth_players and auth_premium from 36-character text UUIDs to 16-byte binary keys.
+// Rows are copied into a new table in small keyset-paged transactions, so neither table is locked
+// for the whole copy and an interrupted run picks up where it stopped. The tables are swapped at the end,
+// only if the copy holds every row with a valid UUID. Tables that already have binary keys are left alone,
+// so a run interrupted after the first swap (or between the renames of one) can simply be started again.
+public class BinaryUuidMigration implements Migration {
+
+    private final DatabaseManager databaseManager;
+    private final SqlDialect dialect;
+    private final Logger logger;
+    private final int batchSize;
+
+    public BinaryUuidMigration(DatabaseManager databaseManager, Logger logger, int batchSize) {
+        this.databaseManager = databaseManager;
+        this.dialect = databaseManager.getDialect();
+        this.logger = logger;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Binary UUID keys";
+    }
+
+    @Override
+    public void apply() throws SQLException {
+        migratePlayers();
+        migratePremium();
+    }
+
+    private void migratePlayers() throws SQLException {
+        if (alreadyConverted("auth_players", "auth_players_binary")) {
+            restartPlayerIds();
+            return;
+        }
+        rejectCaseDuplicates("auth_players", "id");
+
+        execute("CREATE TABLE IF NOT EXISTS auth_players_binary (" +
+                "id " + dialect.autoIncrementPrimaryKey() + ", " +
+                "uuid " + dialect.binaryKeyType() + " NOT NULL UNIQUE, " +
+                "username VARCHAR(16) NOT NULL, " +
+                "password_hash VARCHAR(255) NOT NULL, " +
+                "last_login_ip VARCHAR(45), " +
+                "registration_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "last_login TIMESTAMP NULL" +
+                ")");
+
+        // Resume after the last row a previous run copied.
+        long lastId = databaseManager.write(session -> {
+            try (ResultSet rs = session.prepare("SELECT COALESCE(MAX(id), 0) FROM auth_players_binary").executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+
+        long copied = 0;
+        int batches = 0;
+        while (true) {
+            long after = lastId;
+            long[] progress = databaseManager.writeTransaction(session -> {
+                PreparedStatement select = session.prepare("SELECT id, uuid, username, password_hash, last_login_ip, " +
+                        "registration_date, last_login FROM auth_players WHERE id > ? ORDER BY id LIMIT ?");
+                PreparedStatement insert = session.prepare("INSERT INTO auth_players_binary (id, uuid, username, " +
+                        "password_hash, last_login_ip, registration_date, last_login) VALUES (?,?,?,?,?,?,?)");
+                select.setLong(1, after);
+                select.setInt(2, batchSize);
+
+                long last = after;
+                long rows = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        last = rs.getLong("id");
+                        rows++;
+                        UUID uuid = parseUuid(rs.getString("uuid"), "auth_players", last);
+                        if (uuid == null) {
+                            continue;
+                        }
+                        insert.setLong(1, last);
+                        insert.setBytes(2, UuidCodec.toBytes(uuid));
+                        insert.setString(3, rs.getString("username"));
+                        insert.setString(4, rs.getString("password_hash"));
+                        insert.setString(5, rs.getString("last_login_ip"));
+                        insert.setTimestamp(6, rs.getTimestamp("registration_date"));
+                        insert.setTimestamp(7, rs.getTimestamp("last_login"));
+                        insert.addBatch();
+                    }
+                }
+                if (rows > 0) {
+                    insert.executeBatch();
+                }
+                return new long[]{last, rows};
+            });
+
+            if (progress[1] == 0) {
+                break;
+            }
+            lastId = progress[0];
+            copied += progress[1];
+            if (++batches % 50 == 0) {
+                logger.info("Converting player UUIDs to binary: " + copied + " rows copied...");
+            }
+        }
+
+        swap("auth_players", "auth_players_binary");
+        restartPlayerIds();
+        logger.info("Converted " + copied + " player UUIDs to binary.");
+    }
+
+    private void restartPlayerIds() throws SQLException {
+        long maxId = databaseManager.write(session -> {
+            try (ResultSet rs = session.prepare("SELECT COALESCE(MAX(id), 0) FROM auth_players").executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+        String restartIdentity = dialect.restartIdentity("auth_players", "id", maxId + 1);
+        if (restartIdentity != null) {
+            execute(restartIdentity);
+        }
+    }
+
+    private void migratePremium() throws SQLException {
+        if (alreadyConverted("auth_premium", "auth_premium_binary")) {
+            return;
+        }
+        rejectCaseDuplicates("auth_premium", "uuid");
+
+        // The premium table is small, so a partial copy is simply started over.
+        execute("DROP TABLE IF EXISTS auth_premium_binary");
+        execute("CREATE TABLE auth_premium_binary (" +
+                "uuid " + dialect.binaryKeyType() + " PRIMARY KEY, " +
+                "is_premium " + dialect.booleanColumn(false) + ", " +
+                "verified_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "last_verification TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+
+        String lastUuid = "";
+        while (true) {
+            String after = lastUuid;
+            String next = databaseManager.writeTransaction(session -> {
+                PreparedStatement select = session.prepare("SELECT uuid, is_premium, verified_date, last_verification " +
+                        "FROM auth_premium WHERE uuid > ? ORDER BY uuid LIMIT ?");
+                PreparedStatement insert = session.prepare("INSERT INTO auth_premium_binary " +
+                        "(uuid, is_premium, verified_date, last_verification) VALUES (?,?,?,?)");
+                select.setString(1, after);
+                select.setInt(2, batchSize);
+
+                String last = null;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        last = rs.getString("uuid");
+                        UUID uuid = parseUuid(last, "auth_premium", -1);
+                        if (uuid == null) {
+                            continue;
+                        }
+                        insert.setBytes(1, UuidCodec.toBytes(uuid));
+                        insert.setObject(2, rs.getObject("is_premium"));
+                        insert.setTimestamp(3, rs.getTimestamp("verified_date"));
+                        insert.setTimestamp(4, rs.getTimestamp("last_verification"));
+                        insert.addBatch();
+                    }
+                }
+                if (last != null) {
+                    insert.executeBatch();
+                }
+                return last;
+            });
+
+            if (next == null) {
+                break;
+            }
+            lastUuid = next;
+        }
+
+        swap("auth_premium", "auth_premium_binary");
+    }
+
+    // UUID.fromString ignores case, so UUIDs that differ only in case would collide on the binary key halfway
+    // through the copy. Checked up front, naming the rows, so they can be merged by hand before starting again.
+    private void rejectCaseDuplicates(String table, String rowColumn) throws SQLException {
+        List<String> duplicates = databaseManager.write(session -> {
+            List<String> rows = new ArrayList<>();
+            try (Statement stmt = session.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT " + rowColumn + ", uuid FROM " + table
+                         + " WHERE LOWER(uuid) IN (SELECT LOWER(uuid) FROM " + table
+                         + " GROUP BY LOWER(uuid) HAVING COUNT(*) > 1) ORDER BY LOWER(uuid), " + rowColumn)) {
+                while (rs.next()) {
+                    String uuid = rs.getString(2);
+                    rows.add(rowColumn.equals("uuid") ? "'" + uuid + "'" : rowColumn + " " + rs.getString(1) + " ('" + uuid + "')");
+                }
+            }
+            return rows;
+        });
+        if (duplicates.isEmpty()) {
+            return;
+        }
+
+        int shown = Math.min(duplicates.size(), 20);
+        String more = duplicates.size() > shown ? " and " + (duplicates.size() - shown) + " more" : "";
+        throw new SQLException("Cannot convert " + table + " to binary UUIDs: these rows have UUIDs that differ only in case "
+                + "and would become the same key: " + String.join(", ", duplicates.subList(0, shown)) + more
+                + ". Merge or delete the duplicates and restart; " + table + " was left as it is.");
+    }
+
+    private UUID parseUuid(String value, String table, long id) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            logger.warning("Skipping " + table + " row " + (id >= 0 ? id + " " : "") + "with invalid UUID '" + value + "'.");
+            return null;
+        }
+    }
+
+    // True if the table has binary keys already. A swap an earlier run was interrupted in is finished first.
+    private boolean alreadyConverted(String table, String binaryTable) throws SQLException {
+        String oldTable = table + "_text";
+        if (!tableExists(table) && tableExists(oldTable) && tableExists(binaryTable)) {
+            // Stopped between the two renames, which H2 commits one by one.
+            verifyCopy(oldTable, binaryTable);
+            execute("ALTER TABLE " + binaryTable + " RENAME TO " + table);
+        }
+        if (!hasBinaryKey(table)) {
+            return false;
+        }
+
+        if (tableExists(oldTable)) {
+            verifyCopy(oldTable, table);
+            execute("DROP TABLE " + oldTable);
+        }
+        logger.info(table + " already uses binary UUIDs, skipping.");
+        return true;
+    }
+
+    // Throws unless the binary table holds exactly the rows of the text table that have a valid UUID.
+    private void verifyCopy(String textTable, String binaryTable) throws SQLException {
+        long expected = databaseManager.write(session -> {
+            long valid = 0;
+            try (Statement stmt = session.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT uuid FROM " + textTable)) {
+                while (rs.next()) {
+                    if (isUuid(rs.getString(1))) {
+                        valid++;
+                    }
+                }
+            }
+            return valid;
+        });
+        long copied = databaseManager.write(session -> {
+            try (Statement stmt = session.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + binaryTable)) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+
+        if (copied != expected) {
+            throw new SQLException("Refusing to replace " + textTable + ": " + binaryTable + " holds " + copied
+                    + " rows, expected " + expected + ". Both tables were left as they are.");
+        }
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+        return databaseManager.write(session -> {
+            Connection conn = session.getConnection();
+            DatabaseMetaData meta = conn.getMetaData();
+            // H2 reports unquoted names in upper case.
+            for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+                try (ResultSet rs = meta.getTables(conn.getCatalog(), null, escapePattern(meta, name), new String[]{"TABLE"})) {
+                    if (rs.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+    }
+
+    private boolean hasBinaryKey(String table) throws SQLException {
+        if (!tableExists(table)) {
+            return false;
+        }
+        return databaseManager.write(session -> {
+            Connection conn = session.getConnection();
+            DatabaseMetaData meta = conn.getMetaData();
+            for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+                try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, escapePattern(meta, name), "%")) {
+                    while (rs.next()) {
+                        if (!"uuid".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                            continue;
+                        }
+                        // The SQLite driver reports every column as VARCHAR, so the declared type name decides there.
+                        String typeName = String.valueOf(rs.getString("TYPE_NAME")).toUpperCase(Locale.ROOT);
+                        switch (rs.getInt("DATA_TYPE")) {
+                            case Types.BINARY:
+                            case Types.VARBINARY:
+                            case Types.LONGVARBINARY:
+                            case Types.BLOB:
+                                return true;
+                            default:
+                                return typeName.contains("BINARY") || typeName.contains("BLOB");
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+    }
+
+    // Table names are LIKE patterns in DatabaseMetaData, and '_' would match any character.
+    private static String escapePattern(DatabaseMetaData meta, String name) throws SQLException {
+        String escape = meta.getSearchStringEscape();
+        if (escape == null || escape.isEmpty()) {
+            return name;
+        }
+        return name.replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    private static boolean isUuid(String value) {
+        try {
+            UUID.fromString(value);
+            return true;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    // Replaces the text-keyed table with its binary copy, once the copy is known to be complete.
+    private void swap(String table, String binaryTable) throws SQLException {
+        verifyCopy(table, binaryTable);
+        String oldTable = table + "_text";
+        // SQLite runs DDL inside the transaction and MySQL renames both tables atomically; H2 commits each statement.
+        databaseManager.writeTransaction(session -> {
+            try (Statement stmt = session.getConnection().createStatement()) {
+                for (String sql : dialect.swapTables(table, binaryTable, oldTable)) {
+                    stmt.execute(sql);
+                }
+                stmt.execute("DROP TABLE " + oldTable);
+            }
+            return null;
+        });
+    }
+
+    private void execute(String sql) throws SQLException {
+        databaseManager.write(session -> {
+            try (Statement stmt = session.getConnection().createStatement()) {
+                stmt.execute(sql);
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.poelsk.authreloaded.database.migration;
+
+import java.sql.SQLException;
+
+// One schema change. Migrations are applied once, in version order, and recorded in schema_version.
+public interface Migration {
+
+    int getVersion();
+
+    String getDescription();
+
+    void apply() throws SQLException;
+}
@@ -0,0 +1,74 @@
+package io.github.poelsk.authreloaded.database.migration;
+
+import io.github.poelsk.authreloaded.database.DatabaseManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+
+// Brings the schema up to the latest version. Each applied migration is recorded in schema_version,
+// so only the ones newer than the database run on startup.
+public class SchemaMigrator {
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(DatabaseManager databaseManager, Logger logger) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.migrations = List.of(
+                new BaseSchemaMigration(databaseManager, logger),
+                new BinaryUuidMigration(databaseManager, logger, 1000),
+                new ScriptMigration(databaseManager, 3, "Performance indexes", "V3__performance_indexes.sql")
+        );
+    }
+
+    public void migrate() throws SQLException {
+        createVersionTable();
+        int current = getCurrentVersion();
+
+        for (Migration migration : migrations) {
+            if (migration.getVersion() <= current) {
+                continue;
+            }
+            logger.info("Migrating database to schema version " + migration.getVersion() + " (" + migration.getDescription() + ")...");
+            migration.apply();
+            recordVersion(migration);
+        }
+    }
+
+    private void createVersionTable() throws SQLException {
+        databaseManager.write(session -> {
+            try (Statement stmt = session.getConnection().createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INTEGER PRIMARY KEY, " +
+                        "description VARCHAR(200) NOT NULL, " +
+                        "installed_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                        ")");
+            }
+            return null;
+        });
+    }
+
+    // 0 for new databases and for installs from before schema versioning.
+    private int getCurrentVersion() throws SQLException {
+        return databaseManager.write(session -> {
+            try (ResultSet rs = session.prepare("SELECT MAX(version) FROM schema_version").executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    private void recordVersion(Migration migration) throws SQLException {
+        databaseManager.write(session -> {
+            PreparedStatement pstmt = session.prepare("INSERT INTO schema_version (version, description) VALUES (?, ?)");
+            pstmt.setInt(1, migration.getVersion());
+            pstmt.setString(2, migration.getDescription());
+            return pstmt.executeUpdate();
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.poelsk.authreloaded.database.migration;
+
+import io.github.poelsk.authreloaded.database.DatabaseManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs db/migration/<database type>/<script> from the plugin jar. Statements are separated by ';'
+// and lines starting with '--' are comments.
+public class ScriptMigration implements Migration {
+
+    protected final DatabaseManager databaseManager;
+    private final int version;
+    private final String description;
+    private final String script;
+
+    public ScriptMigration(DatabaseManager databaseManager, int version, String description, String script) {
+        this.databaseManager = databaseManager;
+        this.version = version;
+        this.description = description;
+        this.script = script;
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public void apply() throws SQLException {
+        List<String> statements = loadStatements();
+        // SQLite and H2 can roll back DDL; MySQL commits each statement regardless.
+        databaseManager.writeTransaction(session -> {
+            try (Statement stmt = session.getConnection().createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+            return null;
+        });
+    }
+
+    private List<String> loadStatements() throws SQLException {
+        String path = "db/migration/" + databaseManager.getDialect().getName() + "/" + script;
+        String content;
+        try (InputStream in = ScriptMigration.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new SQLException("Missing migration script " + path);
+            }
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script " + path, e);
+        }
+
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : content.split("\\R")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String statement : withoutComments.toString().split(";")) {
+            if (!statement.isBlank()) {
+                statements.add(statement.trim());
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.poelsk.authreloaded.importer;
+
+import io.github.poelsk.authreloaded.AuthReloaded;
+import io.github.poelsk.authreloaded.model.PlayerData;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.Driver;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+public class AccountImporter {
+
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+
+    private final AuthReloaded plugin;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public AccountImporter(AuthReloaded plugin) {
+        this.plugin = plugin;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public boolean hasSource(String sourceName) {
+        return plugin.getConfig().isConfigurationSection("import.sources." + sourceName);
+    }
+
+    // Streams the configured source into auth_players off the main thread. Returns false if an import is already running.
+    public boolean startImport(CommandSender sender, String sourceName) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                runImport(sender, sourceName);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void runImport(CommandSender sender, String sourceName) {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("import.sources." + sourceName);
+        int chunkSize = Math.max(1, plugin.getConfig().getInt("import.chunk-size", 1000));
+        ImportCheckpoint checkpoint = new ImportCheckpoint(new File(plugin.getDataFolder(), "import-" + sourceName + ".checkpoint"));
+
+        long startPosition = checkpoint.load();
+        long imported = 0;
+        long skipped = 0;
+        long processed = 0;
+        long startTime = System.currentTimeMillis();
+        long lastReport = startTime;
+
+        if (startPosition > 0) {
+            plugin.getLogger().info("Resuming import '" + sourceName + "' after position " + startPosition + ".");
+        }
+        send(sender, "import_started", sourceName);
+
+        try (ImportSource source = createSource(section, chunkSize)) {
+            source.open(startPosition);
+
+            List<PlayerData> chunk = new ArrayList<>(chunkSize);
+            long chunkPosition = startPosition;
+            ImportRow row;
+            while ((row = source.next()) != null) {
+                processed++;
+                chunkPosition = row.getPosition();
+
+                PlayerData data = convert(row);
+                if (data == null) {
+                    skipped++;
+                } else {
+                    chunk.add(data);
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    int inserted = plugin.getPlayerDataDAO().createPlayers(chunk);
+                    imported += inserted;
+                    skipped += chunk.size() - inserted;
+                    chunk.clear();
+                    checkpoint.save(chunkPosition);
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastReport >= PROGRESS_INTERVAL_MS) {
+                        lastReport = now;
+                        send(sender, "import_progress", String.valueOf(processed), String.valueOf(imported),
+                                String.valueOf(skipped), String.valueOf(rate(processed, startTime, now)));
+                    }
+                }
+            }
+
+            int inserted = plugin.getPlayerDataDAO().createPlayers(chunk);
+            imported += inserted;
+            skipped += chunk.size() - inserted;
+            checkpoint.clear();
+
+            long elapsed = System.currentTimeMillis() - startTime;
+            plugin.getLogger().info("Import '" + sourceName + "' finished: " + imported + " imported, " + skipped
+                    + " skipped in " + TimeUnit.MILLISECONDS.toSeconds(elapsed) + "s.");
+            send(sender, "import_complete", String.valueOf(imported), String.valueOf(skipped),
+                    String.valueOf(rate(processed, startTime, System.currentTimeMillis())));
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Import '" + sourceName + "' failed after " + processed + " rows", e);
+            send(sender, "import_failed", sourceName, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private PlayerData convert(ImportRow row) {
+        String username = row.getUsername();
+        String hash = row.getPasswordHash();
+        if (username == null || username.isEmpty() || username.length() > 16
+                || !plugin.getPasswordService().isSupportedHash(hash)) {
+            return null;
+        }
+
+        UUID uuid;
+        if (row.getUuid() == null) {
+            // Same derivation the server uses for offline-mode players.
+            uuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + username).getBytes(StandardCharsets.UTF_8));
+        } else {
+            try {
+                uuid = UUID.fromString(row.getUuid());
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Skipping import row " + row.getPosition() + " (" + username
+                        + ") with invalid UUID '" + row.getUuid() + "'.");
+                return null;
+            }
+        }
+
+        long registeredAt = row.getRegistrationDate() > 0 ? row.getRegistrationDate() : System.currentTimeMillis();
+        return new PlayerData(uuid, username, hash, row.getLastLoginIp(), new Timestamp(registeredAt));
+    }
+
+    private ImportSource createSource(ConfigurationSection section, int chunkSize) {
+        String type = section.getString("type", "sqlite").toLowerCase();
+        ImportColumns columns = new ImportColumns(section.getConfigurationSection("columns"));
+        String table = section.getString("table", "authme");
+
+        switch (type) {
+            case "mysql": {
+                Properties properties = new Properties();
+                properties.setProperty("user", section.getString("username", ""));
+                properties.setProperty("password", section.getString("password", ""));
+                String url = "jdbc:mysql://" + section.getString("host", "localhost") + ":" + section.getInt("port", 3306)
+                        + "/" + section.getString("database", "authme");
+                return new JdbcImportSource(newDriver("com.mysql.cj.jdbc.Driver"), url, properties, table, columns, chunkSize);
+            }
+            case "csv": {
+                String separator = section.getString("separator", ",");
+                return new CsvImportSource(resolveFile(section.getString("file", "{pluginDir}/import.csv")),
+                        separator.isEmpty() ? ',' : separator.charAt(0), columns);
+            }
+            case "sqlite": {
+                File file = resolveFile(section.getString("file", "{pluginDir}/../AuthMe/authme.db"));
+                Properties properties = new Properties();
+                // SQLITE_OPEN_READONLY: never create or modify the source database.
+                properties.setProperty("open_mode", "1");
+                return new JdbcImportSource(newDriver("org.sqlite.JDBC"), "jdbc:sqlite:" + file.getAbsolutePath(),
+                        properties, table, columns, chunkSize);
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported import source type: " + type);
+        }
+    }
+
+    // Drivers are loaded through the plugin's library class loader, which DriverManager doesn't always see.
+    private Driver newDriver(String className) {
+        try {
+            return (Driver) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("JDBC driver " + className + " is not available", e);
+        }
+    }
+
+    private File resolveFile(String path) {
+        return new File(path.replace("{pluginDir}", plugin.getDataFolder().getAbsolutePath()));
+    }
+
+    private static long rate(long rows, long startTime, long now) {
+        long elapsed = Math.max(1, now - startTime);
+        return rows * 1000 / elapsed;
+    }
+
+    private void send(CommandSender sender, String key, String... args) {
+        Bukkit.getScheduler().runTask(plugin, () -> plugin.getMessageManager().sendMessage(sender, key, args));
+    }
+}
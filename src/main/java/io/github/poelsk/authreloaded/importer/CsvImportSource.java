@@ -0,0 +1,132 @@
+package io.github.poelsk.authreloaded.importer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads a CSV file with a header row. The position of a row is its line number.
+public class CsvImportSource implements ImportSource {
+
+    private final File file;
+    private final char separator;
+    private final ImportColumns columns;
+
+    private BufferedReader reader;
+    private Map<String, Integer> header;
+    private long lineNumber;
+
+    public CsvImportSource(File file, char separator, ImportColumns columns) {
+        this.file = file;
+        this.separator = separator;
+        this.columns = columns;
+    }
+
+    @Override
+    public void open(long afterPosition) throws IOException {
+        reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new IOException("CSV file " + file.getName() + " is empty");
+        }
+        lineNumber = 1;
+        header = new HashMap<>();
+        String[] names = split(headerLine);
+        for (int i = 0; i < names.length; i++) {
+            header.put(names[i].trim().toLowerCase(), i);
+        }
+
+        while (lineNumber < afterPosition && reader.readLine() != null) {
+            lineNumber++;
+        }
+    }
+
+    @Override
+    public ImportRow next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+
+        String[] values = split(line);
+        String username = get(values, columns.realName);
+        if (username == null || username.isEmpty()) {
+            username = get(values, columns.username);
+        }
+        String uuid = get(values, columns.uuid);
+        String registrationDate = get(values, columns.registrationDate);
+
+        long registeredAt = 0;
+        if (registrationDate != null && !registrationDate.isEmpty()) {
+            try {
+                registeredAt = Long.parseLong(registrationDate);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        return new ImportRow(
+                lineNumber,
+                uuid == null || uuid.isEmpty() ? null : uuid,
+                username,
+                get(values, columns.password),
+                get(values, columns.ip),
+                registeredAt
+        );
+    }
+
+    private String get(String[] values, String column) {
+        Integer index = column.isEmpty() ? null : header.get(column.toLowerCase());
+        if (index == null || index >= values.length) {
+            return null;
+        }
+        return values[index];
+    }
+
+    // Minimal RFC 4180 splitting: quoted fields may contain separators and doubled quotes.
+    private String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.poelsk.authreloaded.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// Position of the last committed row, so a failed import resumes where it stopped.
+public class ImportCheckpoint {
+
+    private final File file;
+
+    public ImportCheckpoint(File file) {
+        this.file = file;
+    }
+
+    public long load() {
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public void save(long position) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(tmp.toPath(), String.valueOf(position).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void clear() {
+        file.delete();
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.poelsk.authreloaded.importer;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+// Column names in the source table or CSV header. Defaults match AuthMe's schema.
+public class ImportColumns {
+    final String id;
+    final String uuid;
+    final String username;
+    final String realName;
+    final String password;
+    final String ip;
+    final String registrationDate;
+
+    ImportColumns(ConfigurationSection section) {
+        this.id = get(section, "id", "id");
+        this.uuid = get(section, "uuid", "");
+        this.username = get(section, "username", "username");
+        this.realName = get(section, "realname", "realname");
+        this.password = get(section, "password", "password");
+        this.ip = get(section, "ip", "ip");
+        this.registrationDate = get(section, "regdate", "regdate");
+    }
+
+    private static String get(ConfigurationSection section, String key, String def) {
+        return section == null ? def : section.getString(key, def);
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.poelsk.authreloaded.importer;
+
+// One account as read from the source. The UUID is kept as text, so a malformed one only skips this row.
+public class ImportRow {
+    private final long position;
+    private final String uuid;
+    private final String username;
+    private final String passwordHash;
+    private final String lastLoginIp;
+    private final long registrationDate;
+
+    public ImportRow(long position, String uuid, String username, String passwordHash, String lastLoginIp, long registrationDate) {
+        this.position = position;
+        this.uuid = uuid;
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.lastLoginIp = lastLoginIp;
+        this.registrationDate = registrationDate;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public String getLastLoginIp() {
+        return lastLoginIp;
+    }
+
+    public long getRegistrationDate() {
+        return registrationDate;
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.poelsk.authreloaded.importer;
+
+public interface ImportSource extends AutoCloseable {
+
+    // Starts reading rows whose position is strictly greater than afterPosition.
+    void open(long afterPosition) throws Exception;
+
+    // Returns the next row, or null once the source is exhausted.
+    ImportRow next() throws Exception;
+
+    @Override
+    void close() throws Exception;
+}
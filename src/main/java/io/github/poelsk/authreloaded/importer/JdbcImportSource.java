@@ -0,0 +1,127 @@
+package io.github.poelsk.authreloaded.importer;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+public class JdbcImportSource implements ImportSource {
+
+    private final Driver driver;
+    private final String jdbcUrl;
+    private final Properties properties;
+    private final String table;
+    private final ImportColumns columns;
+    private final int fetchSize;
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private Set<String> availableColumns;
+
+    public JdbcImportSource(Driver driver, String jdbcUrl, Properties properties, String table,
+                            ImportColumns columns, int fetchSize) {
+        this.driver = driver;
+        this.jdbcUrl = jdbcUrl;
+        this.properties = properties;
+        this.table = table;
+        this.columns = columns;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void open(long afterPosition) throws SQLException {
+        connection = driver.connect(jdbcUrl, properties);
+        if (connection == null) {
+            throw new SQLException("No driver accepted " + jdbcUrl);
+        }
+        // MySQL Connector/J only streams with auto-commit off (cursor fetch) or fetchSize = MIN_VALUE.
+        connection.setAutoCommit(false);
+
+        String sql = "SELECT * FROM " + table + " WHERE " + columns.id + " > ? ORDER BY " + columns.id;
+        statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(jdbcUrl.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : fetchSize);
+        statement.setLong(1, afterPosition);
+        resultSet = statement.executeQuery();
+
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        availableColumns = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            availableColumns.add(metaData.getColumnLabel(i).toLowerCase());
+        }
+    }
+
+    @Override
+    public ImportRow next() throws SQLException {
+        if (!resultSet.next()) {
+            return null;
+        }
+
+        String username = getString(columns.realName);
+        if (username == null || username.isEmpty()) {
+            username = getString(columns.username);
+        }
+        String uuid = getString(columns.uuid);
+        Object registrationDate = getObject(columns.registrationDate);
+
+        return new ImportRow(
+                resultSet.getLong(columns.id),
+                uuid == null || uuid.isEmpty() ? null : uuid,
+                username,
+                getString(columns.password),
+                getString(columns.ip),
+                toMillis(registrationDate)
+        );
+    }
+
+    private String getString(String column) throws SQLException {
+        if (column.isEmpty() || !availableColumns.contains(column.toLowerCase())) {
+            return null;
+        }
+        return resultSet.getString(column);
+    }
+
+    private Object getObject(String column) throws SQLException {
+        if (column.isEmpty() || !availableColumns.contains(column.toLowerCase())) {
+            return null;
+        }
+        return resultSet.getObject(column);
+    }
+
+    private static long toMillis(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        if (value != null) {
+            try {
+                return Long.parseLong(value.toString());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.poelsk.authreloaded.listeners;
 
 import io.github.poelsk.authreloaded.AuthReloaded;
+import io.github.poelsk.authreloaded.auth.AdmissionController;
+import io.github.poelsk.authreloaded.database.DatabaseUnavailableException;
+import io.github.poelsk.authreloaded.model.AuthProfile;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -8,13 +11,24 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class PlayerConnectionListener implements Listener {
 
+    private static final long LOOKUP_TIMEOUT_SECONDS = 10;
+    private static final long UNCLAIMED_HOLD_SECONDS = 300;
+
     private final AuthReloaded plugin;
+    // Holds made by pre-login events still being handled, so the MONITOR handler releases its own.
+    private final Map<AsyncPlayerPreLoginEvent, Long> preLoginHolds = new ConcurrentHashMap<>();
 
     public PlayerConnectionListener(AuthReloaded plugin) {
         this.plugin = plugin;
@@ -27,8 +41,70 @@ public class PlayerConnectionListener implements Listener {
         }
 
         UUID playerUUID = event.getUniqueId();
-        boolean isRegistered = plugin.getPlayerDataDAO().isPlayerRegistered(playerUUID);
-        plugin.getPlayerStatusManager().setPendingStatus(playerUUID, isRegistered);
+        // Joins are counted before anything is looked up, so a flood is turned away without reaching the
+        // database. While the server or this address is under attack, it is treated like a lockdown.
+        AdmissionController admission = plugin.getAdmissionController();
+        boolean underAttack = admission != null && admission.recordJoin(event.getAddress());
+        boolean lockdown = underAttack || plugin.getLockdownManager().isEnabled();
+
+        // Certainly not registered as far as this server knows, so there is nothing to look up. This only
+        // skips the read: /register and /login check an unregistered profile against the database again.
+        if (!plugin.getPlayerDataDAO().mightBeRegistered(playerUUID)) {
+            if (lockdown) {
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, plugin.getMessageManager().getRawMessage("lockdown_kick"));
+                return;
+            }
+            hold(event, AuthProfile.unregistered(playerUUID));
+            return;
+        }
+
+        // Lookups from players joining at the same moment are sent as one query. The profile is held for
+        // the whole session, so /login, /register and premium checks are answered from memory.
+        AuthProfile profile;
+        try {
+            profile = plugin.getPlayerLookupBatcher().lookup(playerUUID).get(LOOKUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, plugin.getMessageManager().getRawMessage("error_login_check"));
+            return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DatabaseUnavailableException) {
+                // The circuit breaker is open, so the lookup failed without waiting on the database.
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, plugin.getMessageManager().getRawMessage("auth_backend_unavailable"));
+                return;
+            }
+            plugin.getLogger().warning("Could not look up " + event.getName() + " at login: " + e.getCause());
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, plugin.getMessageManager().getRawMessage("error_login_check"));
+            return;
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Could not look up " + event.getName() + " at login: " + e);
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, plugin.getMessageManager().getRawMessage("error_login_check"));
+            return;
+        }
+
+        if (lockdown && !profile.isRegistered()) {
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, plugin.getMessageManager().getRawMessage("lockdown_kick"));
+            return;
+        }
+        hold(event, profile);
+    }
+
+    // Runs after every other plugin, so a connection one of them turned away doesn't keep its profile.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLoginResult(AsyncPlayerPreLoginEvent event) {
+        Long holdId = preLoginHolds.remove(event);
+        if (holdId != null && event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            releaseUnclaimed(event.getUniqueId(), holdId);
+        }
+    }
+
+    // Bans, the whitelist and a full server turn connections away after pre-login.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        UUID playerUUID = event.getPlayer().getUniqueId();
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED && plugin.getAuthProfileManager().releaseUnclaimed(playerUUID)) {
+            plugin.getPlayerStatusManager().removePendingStatus(playerUUID);
+        }
     }
 
     @EventHandler
@@ -40,6 +116,7 @@ public class PlayerConnectionListener implements Listener {
             return;
         }
 
+        plugin.getAuthProfileManager().claim(player);
         Boolean isRegistered = plugin.getPlayerStatusManager().getPendingStatus(player.getUniqueId());
         plugin.getPlayerStatusManager().removePendingStatus(player.getUniqueId());
 
@@ -57,6 +134,25 @@ public class PlayerConnectionListener implements Listener {
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         plugin.getSessionManager().endSession(event.getPlayer());
-        plugin.getPlayerStatusManager().removePendingStatus(event.getPlayer().getUniqueId());
+        plugin.getPlayerDataDAO().evictCached(event.getPlayer().getUniqueId());
+        // Only the hold this player claimed: a duplicate login kicks the old session after the new
+        // connection's pre-login, and its pending status was already taken at join.
+        plugin.getAuthProfileManager().release(event.getPlayer());
+        plugin.getPremiumManager().clearCache(event.getPlayer().getUniqueId());
+    }
+
+    private void hold(AsyncPlayerPreLoginEvent event, AuthProfile profile) {
+        UUID playerUUID = profile.getUuid();
+        long holdId = plugin.getAuthProfileManager().hold(profile);
+        plugin.getPlayerStatusManager().setPendingStatus(playerUUID, profile.isRegistered());
+        preLoginHolds.put(event, holdId);
+        // A connection can still drop between pre-login and join without any event telling us.
+        plugin.getTimingWheel().schedule(() -> releaseUnclaimed(playerUUID, holdId), UNCLAIMED_HOLD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void releaseUnclaimed(UUID playerUUID, long holdId) {
+        if (plugin.getAuthProfileManager().releaseUnclaimed(playerUUID, holdId)) {
+            plugin.getPlayerStatusManager().removePendingStatus(playerUUID);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package io.github.poelsk.authreloaded.managers;
+
+import io.github.poelsk.authreloaded.model.AuthProfile;
+import io.github.poelsk.authreloaded.model.PlayerData;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Profiles of connected players, from pre-login until they quit. Writes made during the session
+// are applied here as well; writes from other servers sharing the database are not, which is why
+// an unregistered profile is re-checked before it is acted on.
+//
+// A hold is claimed by the player once they join and released only by that player's quit, so the quit
+// of a session kicked by a duplicate login leaves the new connection's profile alone. Holds that are
+// never claimed are released by id, which is a no-op once a newer connection has replaced them.
+public class AuthProfileManager {
+
+    private final AtomicLong nextHoldId = new AtomicLong();
+    private final Map<UUID, Held> profiles = new ConcurrentHashMap<>();
+
+    // Returns the id releaseUnclaimed takes.
+    public long hold(AuthProfile profile) {
+        long holdId = nextHoldId.incrementAndGet();
+        profiles.put(profile.getUuid(), new Held(profile, holdId, null));
+        return holdId;
+    }
+
+    public AuthProfile getProfile(UUID uuid) {
+        Held held = profiles.get(uuid);
+        return held == null ? null : held.profile;
+    }
+
+    // Returns false if nothing is held for the player.
+    public boolean claim(Player player) {
+        return profiles.computeIfPresent(player.getUniqueId(), (uuid, held) -> new Held(held.profile, held.holdId, player)) != null;
+    }
+
+    public void updatePlayerData(PlayerData data) {
+        profiles.computeIfPresent(data.getUuid(), (uuid, held) -> held.with(held.profile.withPlayerData(data)));
+    }
+
+    public void updatePremium(UUID uuid, boolean premium) {
+        profiles.computeIfPresent(uuid, (key, held) -> held.with(held.profile.withPremium(premium)));
+    }
+
+    // Releases the hold if it is still the current one and nobody has claimed it.
+    public boolean releaseUnclaimed(UUID uuid, long holdId) {
+        Held held = profiles.get(uuid);
+        return held != null && held.holdId == holdId && held.player == null && profiles.remove(uuid, held);
+    }
+
+    // Releases the hold if nobody has claimed it, for a connection turned away after its pre-login.
+    public boolean releaseUnclaimed(UUID uuid) {
+        Held held = profiles.get(uuid);
+        return held != null && held.player == null && profiles.remove(uuid, held);
+    }
+
+    // Releases the hold the player claimed, if it is still held.
+    public void release(Player player) {
+        profiles.computeIfPresent(player.getUniqueId(), (uuid, held) -> held.player == player ? null : held);
+    }
+
+    public int getHeldCount() {
+        return profiles.size();
+    }
+
+    public void clear() {
+        profiles.clear();
+    }
+
+    private static final class Held {
+
+        private final AuthProfile profile;
+        private final long holdId;
+        private final Player player;
+
+        private Held(AuthProfile profile, long holdId, Player player) {
+            this.profile = profile;
+            this.holdId = holdId;
+            this.player = player;
+        }
+
+        private Held with(AuthProfile updated) {
+            return new Held(updated, holdId, player);
+        }
+    }
+}
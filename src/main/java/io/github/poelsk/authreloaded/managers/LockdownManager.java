@@ -0,0 +1,20 @@
+package io.github.poelsk.authreloaded.managers;
+
+// While enabled, only players with a registered account can join. Meant for bot attacks that
+// join with thousands of random names.
+public class LockdownManager {
+
+    private volatile boolean enabled;
+
+    public LockdownManager(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -21,6 +21,12 @@ public class MessageManager {
         loadMessages();
     }
 
+    // Uses an already loaded language file instead of reading one from the plugin folder.
+    public MessageManager(AuthReloaded plugin, FileConfiguration langConfig) {
+        this.plugin = plugin;
+        this.langConfig = langConfig;
+    }
+
     public void loadMessages() {
         String lang = plugin.getConfig().getString("messages.language", "en-US");
         File langFile = new File(plugin.getDataFolder(), lang + ".yml");
@@ -1,135 +1,133 @@
 package io.github.poelsk.authreloaded.managers;
 
 import io.github.poelsk.authreloaded.AuthReloaded;
+import io.github.poelsk.authreloaded.cache.ExpiringCache;
+import io.github.poelsk.authreloaded.database.UuidCodec;
+import io.github.poelsk.authreloaded.database.dialect.SqlDialect;
+import io.github.poelsk.authreloaded.model.AuthProfile;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Map;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class PremiumManager {
 
     private final AuthReloaded plugin;
-    private final Map<UUID, Boolean> premiumCache = new ConcurrentHashMap<>();
+    // Premium accounts rarely lose the status, so positive answers are kept longer than negative ones.
+    private final ExpiringCache<UUID, Boolean> premiumCache;
+    private final long positiveTtlSeconds;
+    private final long negativeTtlSeconds;
+    private final long refreshAheadSeconds;
+    private final SqlDialect dialect;
+    private final String upsertSql;
+    private BukkitTask refreshTask;
 
     public PremiumManager(AuthReloaded plugin) {
         this.plugin = plugin;
-        createPremiumTable();
-    }
-
-    private void createPremiumTable() {
-        String dbType = plugin.getConfig().getString("database.type", "sqlite").toLowerCase();
-        String sql;
-
-        switch (dbType) {
-            case "sqlite":
-                sql = "CREATE TABLE IF NOT EXISTS auth_premium (" +
-                        "uuid TEXT(36) PRIMARY KEY, " +
-                        "is_premium INTEGER NOT NULL DEFAULT 0, " +
-                        "verified_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-                        "last_verification TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                        ");";
-                break;
-            case "mysql":
-                sql = "CREATE TABLE IF NOT EXISTS auth_premium (" +
-                        "uuid VARCHAR(36) PRIMARY KEY, " +
-                        "is_premium BOOLEAN NOT NULL DEFAULT FALSE, " +
-                        "verified_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-                        "last_verification TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                        ");";
-                break;
-            case "h2":
-                sql = "CREATE TABLE IF NOT EXISTS auth_premium (" +
-                        "uuid VARCHAR(36) PRIMARY KEY, " +
-                        "is_premium BOOLEAN NOT NULL DEFAULT FALSE, " +
-                        "verified_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-                        "last_verification TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
-                        ");";
-                break;
-            default:
-                throw new IllegalStateException("Unsupported database type: " + dbType);
-        }
-
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.execute();
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Could not create premium table!");
-            e.printStackTrace();
+        this.dialect = plugin.getDatabaseManager().getDialect();
+        // verified_date is only set when the row is first inserted.
+        this.upsertSql = dialect.upsert("auth_premium", "uuid", "uuid", "is_premium", "last_verification");
+
+        this.positiveTtlSeconds = plugin.getConfig().getLong("database.premium-cache.positive-ttl-seconds", 3600);
+        this.negativeTtlSeconds = plugin.getConfig().getLong("database.premium-cache.negative-ttl-seconds", 300);
+        this.refreshAheadSeconds = plugin.getConfig().getLong("database.premium-cache.refresh-ahead-seconds", 60);
+        this.premiumCache = new ExpiringCache<>(plugin.getConfig().getInt("database.premium-cache.max-size", 10000),
+                Math.max(positiveTtlSeconds, negativeTtlSeconds), TimeUnit.SECONDS);
+
+        if (premiumCache.isEnabled() && refreshAheadSeconds > 0) {
+            long periodTicks = Math.max(20, refreshAheadSeconds * 20 / 2);
+            this.refreshTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::refreshExpiring, periodTicks, periodTicks);
         }
     }
 
     public boolean isPremium(UUID playerUUID) {
+        // The profile held for a registered player already carries the premium flag.
+        AuthProfile profile = plugin.getAuthProfileManager().getProfile(playerUUID);
+        if (profile != null && profile.isRegistered()) {
+            return profile.isPremium();
+        }
+
         Boolean cached = premiumCache.get(playerUUID);
         if (cached != null) {
             return cached;
         }
 
-        String sql = "SELECT is_premium FROM auth_premium WHERE uuid = ?";
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, playerUUID.toString());
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                boolean isPremium;
-                String dbType = plugin.getConfig().getString("database.type", "sqlite").toLowerCase();
-                if ("sqlite".equals(dbType)) {
-                    isPremium = rs.getInt("is_premium") == 1;
-                } else {
-                    isPremium = rs.getBoolean("is_premium");
-                }
-                premiumCache.put(playerUUID, isPremium);
-                return isPremium;
-            }
+        try {
+            boolean premium = loadPremium(playerUUID);
+            cachePremium(playerUUID, premium);
+            return premium;
         } catch (SQLException e) {
+            // Not cached, so the next check tries the database again.
             plugin.getLogger().warning("Error checking premium status for " + playerUUID);
             e.printStackTrace();
         }
-
-        premiumCache.put(playerUUID, false);
         return false;
     }
 
-    public void setPremium(UUID playerUUID, boolean isPremium) {
-        String dbType = plugin.getConfig().getString("database.type", "sqlite").toLowerCase();
-        String sql;
-
-        switch (dbType) {
-            case "sqlite":
-                sql = "INSERT OR REPLACE INTO auth_premium (uuid, is_premium, verified_date, last_verification) " +
-                        "VALUES (?, ?, datetime('now'), datetime('now'))";
-                break;
-            case "mysql":
-                sql = "INSERT INTO auth_premium (uuid, is_premium, verified_date, last_verification) " +
-                        "VALUES (?, ?, NOW(), NOW()) " +
-                        "ON DUPLICATE KEY UPDATE is_premium = VALUES(is_premium), last_verification = NOW()";
-                break;
-            case "h2":
-                sql = "MERGE INTO auth_premium (uuid, is_premium, verified_date, last_verification) " +
-                        "VALUES (?, ?, NOW(), NOW())";
-                break;
-            default:
-                throw new IllegalStateException("Unsupported database type: " + dbType);
-        }
+    private boolean loadPremium(UUID playerUUID) throws SQLException {
+        String sql = "SELECT is_premium FROM auth_premium WHERE uuid = ?";
+        return plugin.getDatabaseManager().shardFor(playerUUID).read(playerUUID, session -> {
+            PreparedStatement stmt = session.prepare(sql);
+            stmt.setBytes(1, UuidCodec.toBytes(playerUUID));
 
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && dialect.getBoolean(rs, "is_premium");
+            }
+        });
+    }
 
-            stmt.setString(1, playerUUID.toString());
+    private void cachePremium(UUID playerUUID, boolean premium) {
+        premiumCache.put(playerUUID, premium, premium ? positiveTtlSeconds : negativeTtlSeconds, TimeUnit.SECONDS);
+    }
 
-            if ("sqlite".equals(dbType)) {
-                stmt.setInt(2, isPremium ? 1 : 0);
-            } else {
-                stmt.setBoolean(2, isPremium);
+    // Runs on the main thread: reloads entries of online players that are about to expire, so their
+    // next check doesn't wait on the database.
+    private void refreshExpiring() {
+        List<UUID> expiring = new ArrayList<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            if (premiumCache.expiresWithin(player.getUniqueId(), refreshAheadSeconds, TimeUnit.SECONDS)) {
+                expiring.add(player.getUniqueId());
             }
+        }
+        if (expiring.isEmpty()) {
+            return;
+        }
 
-            stmt.executeUpdate();
-            premiumCache.put(playerUUID, isPremium);
+        try {
+            plugin.getDatabaseManager().getExecutor().execute(() -> {
+                for (UUID playerUUID : expiring) {
+                    try {
+                        cachePremium(playerUUID, loadPremium(playerUUID));
+                    } catch (SQLException e) {
+                        plugin.getLogger().warning("Error refreshing premium status for " + playerUUID + ": " + e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // The entries are loaded again on their next check.
+        }
+    }
+
+    public void setPremium(UUID playerUUID, boolean isPremium) {
+        try {
+            plugin.getDatabaseManager().shardFor(playerUUID).write(session -> {
+                PreparedStatement stmt = session.prepare(upsertSql);
+                stmt.setBytes(1, UuidCodec.toBytes(playerUUID));
+                dialect.setBoolean(stmt, 2, isPremium);
+                stmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                return stmt.executeUpdate();
+            });
+            plugin.getDatabaseManager().markWritten(playerUUID);
+            cachePremium(playerUUID, isPremium);
+            plugin.getAuthProfileManager().updatePremium(playerUUID, isPremium);
 
             plugin.getLogger().info("Player " + playerUUID + " premium status set to: " + isPremium);
 
@@ -142,13 +140,16 @@ public class PremiumManager {
     public void removePremiumStatus(UUID playerUUID) {
         String sql = "DELETE FROM auth_premium WHERE uuid = ?";
 
-        try (Connection conn = plugin.getDatabaseManager().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try {
+            plugin.getDatabaseManager().shardFor(playerUUID).write(session -> {
+                PreparedStatement stmt = session.prepare(sql);
+                stmt.setBytes(1, UuidCodec.toBytes(playerUUID));
+                return stmt.executeUpdate();
+            });
 
-            stmt.setString(1, playerUUID.toString());
-            stmt.executeUpdate();
-
-            premiumCache.remove(playerUUID);
+            plugin.getDatabaseManager().markWritten(playerUUID);
+            premiumCache.invalidate(playerUUID);
+            plugin.getAuthProfileManager().updatePremium(playerUUID, false);
 
         } catch (SQLException e) {
             plugin.getLogger().warning("Error removing premium status for " + playerUUID);
@@ -157,10 +158,29 @@ public class PremiumManager {
     }
 
     public void clearCache(UUID playerUUID) {
-        premiumCache.remove(playerUUID);
+        premiumCache.invalidate(playerUUID);
     }
 
     public void clearAllCache() {
-        premiumCache.clear();
+        premiumCache.invalidateAll();
+    }
+
+    public int getCacheSize() {
+        return premiumCache.size();
+    }
+
+    public long getCacheHitCount() {
+        return premiumCache.getHitCount();
+    }
+
+    public long getCacheMissCount() {
+        return premiumCache.getMissCount();
+    }
+
+    public void shutdown() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+        }
+        plugin.getLogger().info("Premium cache: " + getCacheHitCount() + " hits, " + getCacheMissCount() + " misses.");
     }
 }
\ No newline at end of file
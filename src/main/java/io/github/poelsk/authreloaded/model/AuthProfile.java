@@ -0,0 +1,46 @@
+package io.github.poelsk.authreloaded.model;
+
+import java.util.Optional;
+import java.util.UUID;
+
+// Everything the auth checks need about a connected player, loaded once at pre-login.
+// The premium flag is only loaded together with a registered account.
+public class AuthProfile {
+    private final UUID uuid;
+    private final PlayerData playerData;
+    private final boolean premium;
+
+    public AuthProfile(UUID uuid, PlayerData playerData, boolean premium) {
+        this.uuid = uuid;
+        this.playerData = playerData;
+        this.premium = premium;
+    }
+
+    public static AuthProfile unregistered(UUID uuid) {
+        return new AuthProfile(uuid, null, false);
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public Optional<PlayerData> getPlayerData() {
+        return Optional.ofNullable(playerData);
+    }
+
+    public boolean isRegistered() {
+        return playerData != null;
+    }
+
+    public boolean isPremium() {
+        return premium;
+    }
+
+    public AuthProfile withPlayerData(PlayerData playerData) {
+        return new AuthProfile(uuid, playerData, premium);
+    }
+
+    public AuthProfile withPremium(boolean premium) {
+        return new AuthProfile(uuid, playerData, premium);
+    }
+}
@@ -9,13 +9,20 @@ public class PlayerData {
     private final String passwordHash;
     private final String lastLoginIp;
     private final Timestamp registrationDate;
+    private final Timestamp lastLogin;
 
     public PlayerData(UUID uuid, String username, String passwordHash, String lastLoginIp, Timestamp registrationDate) {
+        this(uuid, username, passwordHash, lastLoginIp, registrationDate, null);
+    }
+
+    public PlayerData(UUID uuid, String username, String passwordHash, String lastLoginIp, Timestamp registrationDate,
+                      Timestamp lastLogin) {
         this.uuid = uuid;
         this.username = username;
         this.passwordHash = passwordHash;
         this.lastLoginIp = lastLoginIp;
         this.registrationDate = registrationDate;
+        this.lastLogin = lastLogin;
     }
 
     public UUID getUuid() {
@@ -37,4 +44,8 @@ public class PlayerData {
     public Timestamp getRegistrationDate() {
         return registrationDate;
     }
+
+    public Timestamp getLastLogin() {
+        return lastLogin;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+-- Original layout with text UUIDs. Version 2 converts the keys to binary.
+CREATE TABLE IF NOT EXISTS auth_players (
+    id INTEGER PRIMARY KEY AUTO_INCREMENT,
+    uuid VARCHAR(36) NOT NULL UNIQUE,
+    username VARCHAR(16) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    last_login_ip VARCHAR(45),
+    registration_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_login TIMESTAMP NULL
+);
+
+CREATE TABLE IF NOT EXISTS auth_premium (
+    uuid VARCHAR(36) PRIMARY KEY,
+    is_premium BOOLEAN NOT NULL DEFAULT FALSE,
+    verified_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_verification TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
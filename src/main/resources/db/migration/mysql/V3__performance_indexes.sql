@@ -0,0 +1,23 @@
+-- Lookups by name, IP and last login no longer scan the whole table.
+-- MySQL has no CREATE INDEX IF NOT EXISTS, so indexes that were already added by hand are skipped
+-- by checking information_schema first.
+SET @sql = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_auth_players_username ON auth_players (username)', 'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'auth_players' AND index_name = 'idx_auth_players_username');
+PREPARE create_index FROM @sql;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+SET @sql = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_auth_players_last_login_ip ON auth_players (last_login_ip)', 'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'auth_players' AND index_name = 'idx_auth_players_last_login_ip');
+PREPARE create_index FROM @sql;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+SET @sql = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_auth_players_last_login ON auth_players (last_login)', 'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'auth_players' AND index_name = 'idx_auth_players_last_login');
+PREPARE create_index FROM @sql;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
@@ -0,0 +1,17 @@
+-- Original layout with text UUIDs. Version 2 converts the keys to binary.
+CREATE TABLE IF NOT EXISTS auth_players (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    uuid TEXT(36) NOT NULL UNIQUE,
+    username TEXT(16) NOT NULL,
+    password_hash TEXT(255) NOT NULL,
+    last_login_ip TEXT(45),
+    registration_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_login TIMESTAMP NULL
+);
+
+CREATE TABLE IF NOT EXISTS auth_premium (
+    uuid TEXT(36) PRIMARY KEY,
+    is_premium INTEGER NOT NULL DEFAULT 0,
+    verified_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_verification TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,4 @@
+-- Lookups by name, IP and last login no longer scan the whole table.
+CREATE INDEX IF NOT EXISTS idx_auth_players_username ON auth_players (username);
+CREATE INDEX IF NOT EXISTS idx_auth_players_last_login_ip ON auth_players (last_login_ip);
+CREATE INDEX IF NOT EXISTS idx_auth_players_last_login ON auth_players (last_login);
@@ -0,0 +1,117 @@
+package io.github.poelsk.authreloaded.auth;
+
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private final TimingWheel timingWheel = new TimingWheel("test-wheel", 10, TimeUnit.MILLISECONDS, Logger.getGlobal());
+    private int nextHost;
+
+    @AfterEach
+    void shutDown() {
+        timingWheel.shutdown();
+    }
+
+    @Test
+    void entersAttackModeAtEnterThreshold() throws Exception {
+        AdmissionController controller = controller(60, 10, 5, 0);
+
+        for (int i = 0; i < 9; i++) {
+            assertFalse(controller.recordJoin(nextAddress()));
+        }
+        assertFalse(controller.isAttackMode());
+
+        assertTrue(controller.recordJoin(nextAddress()));
+        assertTrue(controller.isAttackMode());
+    }
+
+    @Test
+    void staysInAttackModeBetweenExitAndEnterThreshold() throws Exception {
+        AdmissionController controller = controller(1, 10, 5, 0);
+        for (int i = 0; i < 20; i++) {
+            controller.recordJoin(nextAddress());
+        }
+        assertTrue(controller.isAttackMode());
+
+        // 60% into the next one-second window the 20 joins count as 8, plus the new one: below the
+        // enter threshold but not below the exit threshold.
+        long now = System.currentTimeMillis();
+        Thread.sleep(now / 1000 * 1000 + 1_600 - now);
+
+        assertTrue(controller.recordJoin(nextAddress()));
+        assertTrue(controller.isAttackMode());
+    }
+
+    @Test
+    void leavesAttackModeOnceJoinsHaveSlidOut() throws Exception {
+        AdmissionController controller = controller(1, 10, 5, 0);
+        for (int i = 0; i < 20; i++) {
+            controller.recordJoin(nextAddress());
+        }
+        assertTrue(controller.isAttackMode());
+
+        // Two one-second windows later every earlier join has slid out.
+        Thread.sleep(2_100);
+
+        assertFalse(controller.recordJoin(nextAddress()));
+        assertFalse(controller.isAttackMode());
+    }
+
+    @Test
+    void staysInAttackModeForMinimumDuration() throws Exception {
+        AdmissionController controller = controller(1, 10, 5, 60);
+        for (int i = 0; i < 20; i++) {
+            controller.recordJoin(nextAddress());
+        }
+
+        Thread.sleep(2_100);
+
+        assertTrue(controller.recordJoin(nextAddress()));
+        assertTrue(controller.isAttackMode());
+    }
+
+    @Test
+    void singleAddressIsLimitedOnItsOwn() throws Exception {
+        AdmissionController controller = new AdmissionController(timingWheel, Logger.getGlobal(), 60, 1000, 500, 0, 3, 100);
+        InetAddress address = InetAddress.getByName("203.0.113.7");
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(controller.recordJoin(address));
+        }
+        assertTrue(controller.recordJoin(address));
+        assertFalse(controller.recordJoin(InetAddress.getByName("198.51.100.7")));
+        assertFalse(controller.isAttackMode());
+    }
+
+    @Test
+    void ipv6HostsShareTheirSlash64() throws Exception {
+        AdmissionController controller = new AdmissionController(timingWheel, Logger.getGlobal(), 60, 1000, 500, 0, 2, 100);
+
+        assertFalse(controller.recordJoin(InetAddress.getByName("2001:db8:1:2::1")));
+        assertFalse(controller.recordJoin(InetAddress.getByName("2001:db8:1:2::ffff")));
+        assertTrue(controller.recordJoin(InetAddress.getByName("2001:db8:1:2:abcd::1")));
+        assertFalse(controller.recordJoin(InetAddress.getByName("2001:db8:1:3::1")));
+    }
+
+    private AdmissionController controller(long windowSeconds, int enterJoins, int exitJoins, long minAttackSeconds) {
+        // Per-address limits high enough that only the global count matters.
+        return new AdmissionController(timingWheel, Logger.getGlobal(), windowSeconds, enterJoins, exitJoins,
+                minAttackSeconds, 1000, 1000);
+    }
+
+    // A different /24 every time, so the subnet limit doesn't kick in either.
+    private InetAddress nextAddress() throws UnknownHostException {
+        int host = nextHost++;
+        return InetAddress.getByAddress(new byte[]{10, (byte) (host >> 8), (byte) host, 1});
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.poelsk.authreloaded.auth;
+
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongKeyLimiterTest {
+
+    private final TimingWheel timingWheel = new TimingWheel("test-wheel", 10, TimeUnit.MILLISECONDS, Logger.getGlobal());
+
+    @AfterEach
+    void shutDown() {
+        timingWheel.shutdown();
+    }
+
+    @Test
+    void limitsEachKeySeparately() {
+        LongKeyLimiter limiter = new LongKeyLimiter(3, 1, TimeUnit.HOURS, timingWheel);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 3; i++) {
+            limiter.recordAttempt(1, now);
+        }
+        limiter.recordAttempt(2, now);
+
+        assertTrue(limiter.isLimited(1, now));
+        assertFalse(limiter.isLimited(2, now));
+        assertFalse(limiter.isLimited(3, now));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void resetClearsCountsButKeepsKey() {
+        LongKeyLimiter limiter = new LongKeyLimiter(2, 1, TimeUnit.HOURS, timingWheel);
+        long now = System.currentTimeMillis();
+        limiter.recordAttempt(7, now);
+        limiter.recordAttempt(7, now);
+
+        limiter.reset(7);
+
+        assertFalse(limiter.isLimited(7, now));
+        assertEquals(0, limiter.getRemainingSeconds(7, now));
+        limiter.recordAttempt(7, now);
+        limiter.recordAttempt(7, now);
+        assertTrue(limiter.isLimited(7, now));
+    }
+
+    @Test
+    void keysEqualToSentinelsStillCount() {
+        LongKeyLimiter limiter = new LongKeyLimiter(1, 1, TimeUnit.HOURS, timingWheel);
+        long now = System.currentTimeMillis();
+
+        limiter.recordAttempt(Long.MIN_VALUE, now);
+
+        assertTrue(limiter.isLimited(Long.MIN_VALUE, now));
+        assertTrue(limiter.isLimited(Long.MIN_VALUE + 1, now));
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        LongKeyLimiter limiter = new LongKeyLimiter(2, 1, TimeUnit.HOURS, timingWheel);
+        long now = System.currentTimeMillis();
+
+        for (long key = 0; key < 10_000; key++) {
+            limiter.recordAttempt(key, now);
+            limiter.recordAttempt(key, now);
+        }
+
+        assertEquals(10_000, limiter.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(limiter.isLimited(key, now));
+        }
+    }
+
+    // Threads insert overlapping keys while the table is copied over and over. Every key gets exactly
+    // one attempt per thread, so a lost insert or an update lost to a copy leaves a key below the limit.
+    @Test
+    void concurrentInsertsSurviveResizes() throws Exception {
+        int threads = 8;
+        int keys = 20_000;
+        LongKeyLimiter limiter = new LongKeyLimiter(threads, 1, TimeUnit.HOURS, timingWheel);
+        long now = System.currentTimeMillis();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int offset = t * (keys / threads);
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    // Each thread starts at a different key, so inserts and updates race throughout.
+                    for (int i = 0; i < keys; i++) {
+                        limiter.recordAttempt((offset + i) % keys * 0x9E3779B97F4A7C15L, now);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(keys, limiter.size());
+        for (int i = 0; i < keys; i++) {
+            assertTrue(limiter.isLimited(i * 0x9E3779B97F4A7C15L, now), "key " + i + " lost an attempt");
+        }
+    }
+
+    // Most keys expire at once, so expiries keep shrinking the table while another thread records
+    // attempts. The live count has to come out exact, or the table never shrinks again.
+    @Test
+    void expiriesShrinkTheTableWhileAttemptsAreRecorded() throws Exception {
+        LongKeyLimiter limiter = new LongKeyLimiter(2, 1, TimeUnit.SECONDS, timingWheel);
+        long now = System.currentTimeMillis();
+        for (long key = 0; key < 20_000; key++) {
+            limiter.recordAttempt(key * 0x9E3779B97F4A7C15L, now);
+        }
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> hot = pool.submit(() -> {
+                long end = System.currentTimeMillis() + 3_000;
+                while (System.currentTimeMillis() < end) {
+                    for (long key = -1; key >= -500; key--) {
+                        limiter.recordAttempt(key, System.currentTimeMillis());
+                    }
+                }
+            });
+            hot.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long after = System.currentTimeMillis();
+        for (long key = -1; key >= -500; key--) {
+            assertTrue(limiter.isLimited(key, after), "key " + key + " lost its attempts");
+        }
+        // Every cold key has expired by now; only the hot ones are left.
+        assertEquals(500, limiter.size());
+        for (long key = 0; key < 20_000; key++) {
+            assertFalse(limiter.isLimited(key * 0x9E3779B97F4A7C15L, after));
+        }
+    }
+
+    // Restoring a snapshot claims slots and copies the table like recording does, while the attempts
+    // made since startup keep coming in. Each address gets one attempt from each side, so either one
+    // lost to a copy leaves the address below the limit.
+    @Test
+    void restoreRacingWithAttemptsKeepsBoth() throws Exception {
+        int addresses = 20_000;
+        RateLimitingService before = new RateLimitingService(timingWheel, 100, 3600, 2, 3600, Integer.MAX_VALUE, 3600);
+        for (int i = 0; i < addresses; i++) {
+            before.recordFailedAttempt(UUID.randomUUID(), address(i));
+        }
+        File file = Files.createTempFile("rate-limits", ".bin").toFile();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            RateLimitSnapshot snapshot = new RateLimitSnapshot(file);
+            snapshot.save(before);
+
+            RateLimitingService after = new RateLimitingService(timingWheel, 100, 3600, 2, 3600, Integer.MAX_VALUE, 3600);
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> live = pool.submit(() -> {
+                start.await();
+                for (int i = addresses - 1; i >= 0; i--) {
+                    after.recordFailedAttempt(UUID.randomUUID(), address(i));
+                }
+                return null;
+            });
+            start.countDown();
+            snapshot.load(after);
+            live.get(30, TimeUnit.SECONDS);
+
+            for (int i = 0; i < addresses; i++) {
+                assertEquals(RateLimitingService.LimitResult.IP_LIMITED, after.canAttemptLogin(UUID.randomUUID(), address(i)));
+            }
+        } finally {
+            pool.shutdownNow();
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Test
+    void remainingSecondsOfUnknownKeyIsZero() {
+        LongKeyLimiter limiter = new LongKeyLimiter(1, 1, TimeUnit.HOURS, timingWheel);
+
+        assertEquals(0, limiter.getRemainingSeconds(42, System.currentTimeMillis()));
+    }
+
+    private static InetAddress address(int i) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[]{10, (byte) (i >>> 16), (byte) (i >>> 8), (byte) i});
+    }
+}
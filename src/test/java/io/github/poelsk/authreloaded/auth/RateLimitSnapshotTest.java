@@ -0,0 +1,97 @@
+package io.github.poelsk.authreloaded.auth;
+
+import io.github.poelsk.authreloaded.cache.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimitSnapshotTest {
+
+    private final TimingWheel timingWheel = new TimingWheel("test-wheel", 10, TimeUnit.MILLISECONDS, Logger.getGlobal());
+    private final File file = createTempFile();
+
+    @AfterEach
+    void shutDown() throws IOException {
+        timingWheel.shutdown();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    void restoresLimitsAfterRestart() throws IOException {
+        UUID player = UUID.randomUUID();
+        InetAddress address = InetAddress.getByName("203.0.113.7");
+        RateLimitingService before = newService();
+        for (int i = 0; i < 3; i++) {
+            before.recordFailedAttempt(player, address);
+        }
+
+        RateLimitSnapshot snapshot = new RateLimitSnapshot(file);
+        snapshot.save(before);
+        RateLimitingService after = newService();
+        snapshot.load(after);
+
+        assertEquals(RateLimitingService.LimitResult.PLAYER_LIMITED, after.canAttemptLogin(player, address));
+        assertEquals(RateLimitingService.LimitResult.ALLOWED, after.canAttemptLogin(UUID.randomUUID(), address));
+    }
+
+    @Test
+    void addsRestoredAttemptsToOnesCountedBeforeTheLoad() throws IOException {
+        UUID player = UUID.randomUUID();
+        InetAddress address = InetAddress.getByName("203.0.113.8");
+        RateLimitingService before = newService();
+        for (int i = 0; i < 2; i++) {
+            before.recordFailedAttempt(player, address);
+        }
+        for (int i = 0; i < 3; i++) {
+            before.recordFailedAttempt(UUID.randomUUID(), address);
+        }
+        RateLimitSnapshot snapshot = new RateLimitSnapshot(file);
+        snapshot.save(before);
+
+        // One more attempt for the player and the address lands before the snapshot is read.
+        RateLimitingService after = newService();
+        after.recordFailedAttempt(player, address);
+        snapshot.load(after);
+
+        assertEquals(RateLimitingService.LimitResult.BOTH_LIMITED, after.canAttemptLogin(player, address));
+        assertEquals(RateLimitingService.LimitResult.IP_LIMITED, after.canAttemptLogin(UUID.randomUUID(), address));
+    }
+
+    @Test
+    void skipsEntriesSavedForAnotherWindowLength() throws IOException {
+        UUID player = UUID.randomUUID();
+        InetAddress address = InetAddress.getByName("203.0.113.9");
+        RateLimitingService before = newService();
+        for (int i = 0; i < 6; i++) {
+            before.recordFailedAttempt(player, address);
+        }
+        RateLimitSnapshot snapshot = new RateLimitSnapshot(file);
+        snapshot.save(before);
+
+        RateLimitingService after = new RateLimitingService(timingWheel, 3, 1800, 6, 1800, 100, 1800);
+
+        assertEquals(0, snapshot.load(after));
+        assertEquals(RateLimitingService.LimitResult.ALLOWED, after.canAttemptLogin(player, address));
+    }
+
+    private RateLimitingService newService() {
+        return new RateLimitingService(timingWheel, 3, 3600, 6, 3600, 100, 3600);
+    }
+
+    private static File createTempFile() {
+        try {
+            return Files.createTempFile("rate-limits", ".bin").toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
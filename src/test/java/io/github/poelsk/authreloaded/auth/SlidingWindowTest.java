@@ -0,0 +1,144 @@
+package io.github.poelsk.authreloaded.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingWindowTest {
+
+    // A multiple of the 60 second window, so windows start exactly here.
+    private static final long START = 1_700_000_040_000L;
+    private static final long WINDOW = 60_000;
+
+    private final SlidingWindow window = new SlidingWindow(5, 60, TimeUnit.SECONDS);
+
+    @Test
+    void recordPacksWindowStartAndCount() {
+        long state = window.record(0, START + 1_000);
+
+        assertEquals(START / 1000, state >>> 32);
+        assertEquals(1, state & 0xFFFF);
+        assertEquals(0, (state >>> 16) & 0xFFFF);
+
+        state = window.record(state, START + 2_000);
+        assertEquals(2, state & 0xFFFF);
+        assertEquals(2.0, window.count(state, START + 2_000), 1e-9);
+    }
+
+    @Test
+    void nextWindowMovesCurrentCountToPrevious() {
+        long state = record(0, START, 4);
+        state = window.record(state, START + WINDOW);
+
+        assertEquals((START + WINDOW) / 1000, state >>> 32);
+        assertEquals(4, (state >>> 16) & 0xFFFF);
+        assertEquals(1, state & 0xFFFF);
+    }
+
+    @Test
+    void previousWindowIsWeightedByOverlap() {
+        long state = record(0, START, 4);
+
+        // Halfway into the next window, half of the previous window still overlaps.
+        assertEquals(2.0, window.count(state, START + WINDOW + WINDOW / 2), 1e-9);
+        assertEquals(1.0, window.count(state, START + WINDOW + 3 * WINDOW / 4), 1e-9);
+    }
+
+    @Test
+    void stateIsEmptyOnceTwoWindowsHavePassed() {
+        long state = record(0, START, 3);
+
+        assertFalse(window.isEmpty(state, START + 2 * WINDOW - 1));
+        assertTrue(window.isEmpty(state, START + 2 * WINDOW));
+        assertEquals(START + 2 * WINDOW, window.expiresAtMillis(state));
+    }
+
+    @Test
+    void countSaturatesInsteadOfOverflowingIntoPrevious() {
+        long state = record(0, START, 70_000);
+
+        assertEquals(0xFFFF, state & 0xFFFF);
+        assertEquals(0, (state >>> 16) & 0xFFFF);
+        assertEquals(START / 1000, state >>> 32);
+    }
+
+    @Test
+    void limitAboveWhatCanBeCountedIsCapped() {
+        SlidingWindow large = new SlidingWindow(100_000, 60, TimeUnit.SECONDS);
+        long state = 0;
+        for (int i = 0; i < 70_000; i++) {
+            state = large.record(state, START);
+        }
+
+        assertEquals(SlidingWindow.MAX_ATTEMPTS, large.getMaxAttempts());
+        assertTrue(large.isLimited(state, START));
+    }
+
+    @Test
+    void clearKeepsWindowStart() {
+        long state = record(0, START, 5);
+        long cleared = window.clear(state);
+
+        assertNotEquals(0, cleared);
+        assertEquals(START / 1000, cleared >>> 32);
+        assertEquals(0.0, window.count(cleared, START), 1e-9);
+    }
+
+    @Test
+    void limitedFromMaxAttempts() {
+        long state = record(0, START, 4);
+        assertFalse(window.isLimited(state, START + 1));
+        assertEquals(0, window.remainingSeconds(state, START + 1));
+
+        state = window.record(state, START + 2);
+        assertTrue(window.isLimited(state, START + 2));
+    }
+
+    @Test
+    void remainingSecondsWhenCurrentWindowIsFull() {
+        long state = record(0, START, 5);
+
+        // All five attempts have to slide out, which takes until the end of the next window.
+        assertEquals(61, window.remainingSeconds(state, START));
+        assertRemainingIsTight(state, START);
+    }
+
+    @Test
+    void remainingSecondsWhilePreviousWindowSlidesOut() {
+        long state = record(0, START, 5);
+        state = record(state, START + WINDOW, 2);
+
+        // 5 * (1 - elapsed) + 2 drops below 5 once 40% of the window has passed.
+        assertEquals(25, window.remainingSeconds(state, START + WINDOW));
+        assertRemainingIsTight(state, START + WINDOW);
+        assertRemainingIsTight(state, START + WINDOW + 7_321);
+    }
+
+    @Test
+    void remainingSecondsAfterWindowRolled() {
+        long state = record(0, START, 8);
+
+        assertRemainingIsTight(state, START + 1_000);
+        assertRemainingIsTight(state, START + WINDOW + 10_000);
+    }
+
+    private long record(long state, long nowMillis, int attempts) {
+        for (int i = 0; i < attempts; i++) {
+            state = window.record(state, nowMillis);
+        }
+        return state;
+    }
+
+    // Limited until the reported number of seconds has passed, and allowed right after.
+    private void assertRemainingIsTight(long state, long nowMillis) {
+        long remaining = window.remainingSeconds(state, nowMillis);
+        assertTrue(remaining > 0);
+        assertTrue(window.isLimited(state, nowMillis + (remaining - 1) * 1000 - 1));
+        assertFalse(window.isLimited(state, nowMillis + remaining * 1000));
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.poelsk.authreloaded.auth.hash;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Argon2HasherTest {
+
+    private final Argon2Hasher hasher = new Argon2Hasher(64, 1, 1);
+
+    @Test
+    void verifiesItsOwnHashes() {
+        String hash = hasher.hash("correct horse");
+
+        assertTrue(hasher.accepts(hash));
+        assertTrue(hasher.verify("correct horse", hash));
+        assertFalse(hasher.verify("wrong horse", hash));
+    }
+
+    @Test
+    void rejectsLessThanEightKibPerLane() {
+        String hash = hasher.hash("password").replace("m=64,t=1,p=1", "m=8,t=1,p=16");
+
+        assertFalse(hasher.accepts(hash));
+        assertFalse(hasher.verify("password", hash));
+    }
+
+    @Test
+    void rejectsMemoryAboveTheLimit() {
+        String hash = hasher.hash("password").replace("m=64", "m=4194304");
+
+        assertFalse(hasher.accepts(hash));
+        assertFalse(hasher.verify("password", hash));
+    }
+
+    @Test
+    void rejectsOutputShorterThanFourBytes() {
+        String hash = hasher.hash("password");
+        String shortOutput = hash.substring(0, hash.lastIndexOf('$') + 1) + "AAAA";
+
+        assertFalse(hasher.accepts(shortOutput));
+        assertFalse(hasher.verify("password", shortOutput));
+    }
+
+    @Test
+    void configuredMemoryIsRaisedToEightKibPerLane() {
+        Argon2Hasher parallel = new Argon2Hasher(8, 1, 16);
+        String hash = parallel.hash("password");
+
+        assertTrue(hash.contains("m=128,t=1,p=16"));
+        assertTrue(parallel.verify("password", hash));
+    }
+}
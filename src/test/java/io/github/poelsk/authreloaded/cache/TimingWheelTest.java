@@ -0,0 +1,99 @@
+package io.github.poelsk.authreloaded.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    // 64 ticks of 100 microseconds make the first level span 6.4 ms and the second 410 ms, so the delays below
+    // land on every level and have to cascade down before they fire.
+    private final TimingWheel wheel = new TimingWheel("test-wheel", 100, TimeUnit.MICROSECONDS, Logger.getGlobal());
+
+    @AfterEach
+    void shutDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    void runsTasksNoEarlierThanTheirDelay() throws Exception {
+        long[] delaysMillis = {0, 1, 5, 30, 200, 500, 1_200};
+        CountDownLatch done = new CountDownLatch(delaysMillis.length);
+        List<Long> lateness = Collections.synchronizedList(new ArrayList<>());
+
+        for (long delay : delaysMillis) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            wheel.schedule(() -> {
+                lateness.add(System.nanoTime() - deadline);
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (long late : lateness) {
+            assertTrue(late >= 0, "task ran " + -late + "ns early");
+        }
+    }
+
+    @Test
+    void runsTasksInDeadlineOrder() throws Exception {
+        int tasks = 50;
+        CountDownLatch done = new CountDownLatch(tasks);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Scheduled in reverse, 10 ms apart, so each one crosses more bucket boundaries than the next.
+        for (int i = tasks - 1; i >= 0; i--) {
+            int index = i;
+            wheel.schedule(() -> {
+                order.add(index);
+                done.countDown();
+            }, 10L * i, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, order);
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWheel() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+
+        wheel.schedule(() -> {
+            throw new IllegalStateException("expected");
+        }, 1, TimeUnit.MILLISECONDS);
+        wheel.schedule(done::countDown, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void manyTasksInOneBucketAllRun() throws Exception {
+        int tasks = 10_000;
+        CountDownLatch done = new CountDownLatch(tasks);
+        AtomicLong ran = new AtomicLong();
+
+        for (int i = 0; i < tasks; i++) {
+            wheel.schedule(() -> {
+                ran.incrementAndGet();
+                done.countDown();
+            }, 20, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(tasks, ran.get());
+    }
+}
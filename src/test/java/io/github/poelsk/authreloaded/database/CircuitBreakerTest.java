@@ -0,0 +1,126 @@
+package io.github.poelsk.authreloaded.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(5);
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 5, 0.5, 2000, 10_000);
+
+        for (int i = 0; i < 4; i++) {
+            assertFalse(breaker.recordFailure());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void opensAtFailureRate() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 2000, 10_000);
+
+        breaker.recordSuccess(FAST);
+        breaker.recordSuccess(FAST);
+        breaker.recordFailure();
+        assertTrue(breaker.recordFailure());
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        // Only the call that tripped it reports the change.
+        assertFalse(breaker.recordFailure());
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, 2000, 10_000);
+
+        breaker.recordSuccess(FAST);
+        breaker.recordSuccess(FAST);
+        breaker.recordSuccess(SLOW);
+        assertTrue(breaker.recordSuccess(SLOW));
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.75, 2000, 10_000);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess(FAST);
+        breaker.recordSuccess(FAST);
+        // Pushes the first failure out, so only one of the last four failed.
+        breaker.recordSuccess(FAST);
+        assertFalse(breaker.recordFailure());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void probeOnlyAfterOpenPeriod() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 0.5, 2000, 60_000);
+
+        assertTrue(breaker.recordFailure());
+
+        assertFalse(breaker.tryStartProbe());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void exactlyOneCallerProbes() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 0.5, 2000, 0);
+        breaker.recordFailure();
+
+        assertTrue(breaker.tryStartProbe());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryStartProbe());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void successfulProbeClosesWithAFreshWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 2000, 0);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.tryStartProbe();
+
+        breaker.probeSucceeded();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        // The failures from before the breaker opened don't count anymore.
+        assertFalse(breaker.recordFailure());
+    }
+
+    @Test
+    void failedProbeReopens() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 0.5, 2000, 0);
+        breaker.recordFailure();
+        breaker.tryStartProbe();
+
+        breaker.probeFailed();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryStartProbe());
+    }
+
+    @Test
+    void onlyConnectionProblemsAreBackendFailures() {
+        assertTrue(CircuitBreaker.isBackendFailure(new SQLTransientConnectionException("timeout")));
+        assertTrue(CircuitBreaker.isBackendFailure(new SQLException("link failure", "08S01")));
+        assertTrue(CircuitBreaker.isBackendFailure(new DatabaseUnavailableException("open")));
+        assertFalse(CircuitBreaker.isBackendFailure(new SQLIntegrityConstraintViolationException("duplicate", "23000")));
+        assertFalse(CircuitBreaker.isBackendFailure(new SQLException("syntax", "42000")));
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.poelsk.authreloaded.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.poelsk.authreloaded.model.AuthProfile;
+import io.github.poelsk.authreloaded.model.PlayerData;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LookupBatcherTest {
+
+    @Test
+    void lookupsWithinWindowShareOneLoad() throws Exception {
+        List<Set<Integer>> loads = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LookupBatcher<Integer, String> batcher = new LookupBatcher<>(keys -> {
+            loads.add(new LinkedHashSet<>(keys));
+            Map<Integer, String> result = new HashMap<>();
+            for (int key : keys) {
+                if (key != 3) {
+                    result.put(key, "v" + key);
+                }
+            }
+            return result;
+        }, executor, 200, 100);
+
+        try {
+            CompletableFuture<String> first = batcher.lookup(1);
+            CompletableFuture<String> second = batcher.lookup(2);
+            CompletableFuture<String> missing = batcher.lookup(3);
+
+            assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("v2", second.get(5, TimeUnit.SECONDS));
+            assertNull(missing.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(Set.of(1, 2, 3)), loads);
+        } finally {
+            batcher.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sameKeySharesFuture() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LookupBatcher<Integer, String> batcher = new LookupBatcher<>(keys -> Map.of(), executor, 10_000, 100);
+
+        try {
+            assertSame(batcher.lookup(1), batcher.lookup(1));
+        } finally {
+            batcher.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaiting() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LookupBatcher<Integer, Integer> batcher = new LookupBatcher<>(keys -> {
+            batchSizes.add(keys.size());
+            Map<Integer, Integer> result = new HashMap<>();
+            keys.forEach(key -> result.put(key, key));
+            return result;
+        }, executor, 60_000, 4);
+
+        try {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(batcher.lookup(i));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals(Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(List.of(4, 4), batchSizes);
+        } finally {
+            batcher.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadFailsEveryLookupInTheBatch() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LookupBatcher<Integer, String> batcher = new LookupBatcher<>(keys -> {
+            throw new DatabaseUnavailableException("open");
+        }, executor, 10, 100);
+
+        try {
+            CompletableFuture<String> first = batcher.lookup(1);
+            CompletableFuture<String> second = batcher.lookup(2);
+
+            assertTrue(first.handle((value, e) -> e != null).get(5, TimeUnit.SECONDS));
+            assertTrue(second.handle((value, e) -> e != null).get(5, TimeUnit.SECONDS));
+        } finally {
+            batcher.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    // The profile loader pads its IN list to a power of two by repeating the last key. Every batch size
+    // around a power of two must still return each registered player once and nobody else.
+    @Test
+    void paddedProfileLookupsReturnExactlyTheRequestedPlayers() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:lookup-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        DatabaseManager databaseManager = new DatabaseManager(new HikariDataSource(config), "h2");
+        PlayerDataDAO dao = new PlayerDataDAO(databaseManager, 1000, 300);
+        LookupBatcher<UUID, AuthProfile> batcher = new LookupBatcher<>(dao::getProfilesByUUIDs,
+                databaseManager.getExecutor(), 5, 64);
+
+        try {
+            List<UUID> registered = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                UUID uuid = UUID.randomUUID();
+                dao.createPlayer(new PlayerData(uuid, "player" + i, "hash", "127.0.0.1", new Timestamp(0)));
+                registered.add(uuid);
+            }
+
+            for (int size : new int[]{1, 2, 3, 4, 5, 7, 8, 9, 15, 16, 17}) {
+                List<UUID> requested = new ArrayList<>(registered.subList(0, size));
+                UUID unregistered = UUID.randomUUID();
+                requested.add(unregistered);
+
+                Map<UUID, CompletableFuture<AuthProfile>> futures = new HashMap<>();
+                for (UUID uuid : requested) {
+                    futures.put(uuid, batcher.lookup(uuid));
+                }
+
+                for (UUID uuid : registered.subList(0, size)) {
+                    AuthProfile profile = futures.get(uuid).get(5, TimeUnit.SECONDS);
+                    assertTrue(profile.isRegistered(), "batch of " + (size + 1));
+                    assertEquals(uuid, profile.getPlayerData().get().getUuid());
+                }
+                assertFalse(futures.get(unregistered).get(5, TimeUnit.SECONDS).isRegistered());
+                assertEquals(size + 1, dao.getProfilesByUUIDs(new LinkedHashSet<>(requested)).size());
+            }
+        } finally {
+            batcher.shutdown();
+            databaseManager.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.poelsk.authreloaded.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.poelsk.authreloaded.model.PlayerData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// H2's insert-ignore is a NOT EXISTS check rather than a single atomic statement, so these run against H2.
+class PlayerDataDAOTest {
+
+    private final DatabaseManager databaseManager = newDatabase();
+    private final PlayerDataDAO dao = new PlayerDataDAO(databaseManager, 1000, 300);
+
+    @AfterEach
+    void tearDown() {
+        databaseManager.close();
+    }
+
+    @Test
+    void createPlayerInsertsOnceAndKeepsTheFirstAccount() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        assertTrue(dao.createPlayer(player(uuid, "first")));
+        assertFalse(dao.createPlayer(player(uuid, "second")));
+
+        dao.evictCached(uuid);
+        assertEquals("first", dao.findPlayer(uuid).get().getUsername());
+    }
+
+    @Test
+    void concurrentRegistrationsOfOneAccountInsertItOnce() throws Exception {
+        int threads = 8;
+        for (int round = 0; round < 20; round++) {
+            UUID uuid = UUID.randomUUID();
+            List<Boolean> results = runConcurrently(threads, i -> dao.createPlayer(player(uuid, "player" + i)));
+
+            assertEquals(1, results.stream().filter(Boolean::booleanValue).count(), "round " + round);
+        }
+    }
+
+    @Test
+    void concurrentOverlappingBatchesInsertEachAccountOnce() throws Exception {
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+
+        // Every batch holds all accounts, starting at a different one.
+        int threads = 4;
+        List<Integer> inserted = runConcurrently(threads, t -> {
+            List<PlayerData> batch = new ArrayList<>();
+            for (int i = 0; i < uuids.size(); i++) {
+                batch.add(player(uuids.get((i + t * 50) % uuids.size()), "player" + i));
+            }
+            return dao.createPlayers(batch);
+        });
+
+        assertEquals(uuids.size(), inserted.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(0, dao.createPlayers(List.of(player(uuids.get(0), "again"))));
+    }
+
+    private <T> List<T> runConcurrently(int threads, Task<T> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.run(index);
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface Task<T> {
+        T run(int index) throws Exception;
+    }
+
+    private static PlayerData player(UUID uuid, String username) {
+        return new PlayerData(uuid, username, "hash", "127.0.0.1", new Timestamp(System.currentTimeMillis()));
+    }
+
+    private static DatabaseManager newDatabase() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:dao-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(8);
+        return new DatabaseManager(new HikariDataSource(config), "h2");
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.poelsk.authreloaded.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.poelsk.authreloaded.model.PlayerData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Two separate H2 databases stand in for a MySQL primary and a replica that never catches up, so every
+// result shows which one answered.
+class ReadWriteRoutingTest {
+
+    private static final long READ_YOUR_WRITES_MILLIS = 300;
+
+    private final String primaryUrl = "jdbc:h2:mem:primary-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    private final String replicaUrl = "jdbc:h2:mem:replica-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    private DatabaseManager databaseManager;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // The replica gets the same schema, but none of the writes made through the manager.
+        new DatabaseManager(dataSource(replicaUrl), "h2").close();
+        mark(primaryUrl, "primary");
+        mark(replicaUrl, "replica");
+        databaseManager = new DatabaseManager(dataSource(primaryUrl), List.of(dataSource(replicaUrl)), "h2", READ_YOUR_WRITES_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        databaseManager.close();
+    }
+
+    @Test
+    void plainReadsGoToTheReplica() throws SQLException {
+        assertEquals("replica", databaseManager.read(ReadWriteRoutingTest::answeredBy));
+        assertEquals("replica", databaseManager.read(UUID.randomUUID(), ReadWriteRoutingTest::answeredBy));
+    }
+
+    @Test
+    void readsWithinTheReadYourWritesWindowGoToThePrimary() throws Exception {
+        UUID written = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        databaseManager.markWritten(written);
+
+        assertEquals("primary", databaseManager.read(written, ReadWriteRoutingTest::answeredBy));
+        assertEquals("primary", databaseManager.read(List.of(other, written), ReadWriteRoutingTest::answeredBy));
+        assertEquals("replica", databaseManager.read(other, ReadWriteRoutingTest::answeredBy));
+
+        Thread.sleep(READ_YOUR_WRITES_MILLIS + 100);
+        assertEquals("replica", databaseManager.read(written, ReadWriteRoutingTest::answeredBy));
+    }
+
+    @Test
+    void writesNeverGoToTheReplica() throws Exception {
+        assertEquals("primary", databaseManager.write(ReadWriteRoutingTest::answeredBy));
+        assertEquals("primary", databaseManager.writeTransaction(ReadWriteRoutingTest::answeredBy));
+
+        PlayerDataDAO dao = new PlayerDataDAO(databaseManager, 1000, 300);
+        UUID uuid = UUID.randomUUID();
+        assertTrue(dao.createPlayer(new PlayerData(uuid, "player", "hash", "127.0.0.1", new Timestamp(0))));
+        assertEquals(1, countPlayers(primaryUrl));
+        assertEquals(0, countPlayers(replicaUrl));
+
+        // The lagging replica doesn't have the account, so finding it shows the read went to the primary.
+        dao.evictCached(uuid);
+        assertTrue(dao.findPlayer(uuid).isPresent());
+        Thread.sleep(READ_YOUR_WRITES_MILLIS + 100);
+        dao.evictCached(uuid);
+        assertFalse(dao.findPlayer(uuid).isPresent());
+    }
+
+    private static String answeredBy(SqlSession session) throws SQLException {
+        try (Statement stmt = session.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM routing_marker")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static void mark(String url, String name) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE routing_marker (name VARCHAR(16))");
+            stmt.execute("INSERT INTO routing_marker VALUES ('" + name + "')");
+        }
+    }
+
+    private static int countPlayers(String url) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM auth_players")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static HikariDataSource dataSource(String url) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        return new HikariDataSource(config);
+    }
+}